@@ -0,0 +1,78 @@
+package com.lbg.markets.luxback.service;
+
+import com.lbg.markets.luxback.model.AuditEvent;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link AuditCsvDecoder} with the header-mapped commons-csv path
+ * when loading a base audit file.
+ * <p>
+ * Run with: {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="AuditCsvDecoderBenchmark -prof gc"}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuditCsvDecoderBenchmark {
+
+    @Param({"10000", "100000"})
+    private int events;
+
+    private String csv;
+
+    @Setup
+    public void setUp() throws IOException {
+        String[] types = {"UPLOAD", "DOWNLOAD", "VIEW_FILES", "DELETE"};
+        String[] users = {"alice", "bob", "carol", "dave", "erin"};
+        Instant start = Instant.parse("2024-01-01T00:00:00Z");
+
+        List<AuditEvent> generated = new ArrayList<>(events);
+        for (int i = 0; i < events; i++) {
+            String username = users[i % users.length];
+            generated.add(AuditEvent.builder()
+                    .eventId(UUID.randomUUID().toString())
+                    .eventType(types[i % types.length])
+                    .timestamp(start.plusSeconds(i * 37L))
+                    .username(username)
+                    .filename("report, part " + i + ".xlsx")
+                    .storedAs(i + "_report.xlsx")
+                    .fileSize(1024L * i)
+                    .contentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
+                    .ipAddress("10.0.0." + (i % users.length))
+                    .userAgent("Mozilla/5.0 (Windows NT 10.0; Win64; x64)")
+                    .sessionId("session-" + (i / 50))
+                    .actorUsername(username)
+                    .build());
+        }
+
+        csv = String.join(",", AuditLogStore.CSV_HEADERS) + "\r\n"
+                + new AuditLogStore(null, null).formatSegment(generated);
+    }
+
+    @Benchmark
+    public List<AuditEvent> commonsCsv() throws IOException {
+        return AuditLogStore.readByHeader(new StringReader(csv));
+    }
+
+    @Benchmark
+    public List<AuditEvent> decoder() throws IOException {
+        List<AuditEvent> result = new ArrayList<>(events);
+        try (AuditCsvDecoder decoder = new AuditCsvDecoder(new StringReader(csv))) {
+            decoder.readHeader();
+            for (AuditEvent event = decoder.next(); event != null; event = decoder.next()) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+}
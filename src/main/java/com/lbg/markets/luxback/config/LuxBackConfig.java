@@ -3,7 +3,9 @@ package com.lbg.markets.luxback.config;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
 
+import java.time.Duration;
 import java.util.List;
 
 /**
@@ -46,6 +48,11 @@ public class LuxBackConfig {
      */
     private Security security = new Security();
 
+    /**
+     * Audit log storage and caching configuration
+     */
+    private Audit audit = new Audit();
+
     @Data
     public static class Security {
         /**
@@ -68,4 +75,81 @@ public class LuxBackConfig {
          */
         private String adminPassword;
     }
+
+    @Data
+    public static class Audit {
+        /**
+         * Number of uncompacted segments a user may accumulate before they are
+         * composed into the user's base audit file
+         */
+        private int compactionThreshold = 32;
+
+        /**
+         * How long audit events are coalesced before being written to storage
+         */
+        private Duration flushInterval = Duration.ofMillis(250);
+
+        /**
+         * Maximum number of audit events written in one flush pass
+         */
+        private int maxBatchSize = 500;
+
+        /**
+         * Maximum number of audit events waiting to be written before callers write synchronously
+         */
+        private int queueCapacity = 10000;
+
+        /**
+         * Write-ahead log for queued audit events. Required; each instance logs to its own file
+         * beside it, named with a random instance ID. Events in it survive a crash only if it is
+         * on a durable volume (not the temp directory)
+         */
+        private String walPath;
+
+        /**
+         * How long another instance's write-ahead log may go unmodified before this instance
+         * treats it as left by a crash and replays it. Running instances refresh theirs well
+         * within this, so it must be much longer than the flush interval.
+         */
+        private Duration walOrphanAfter = Duration.ofMinutes(1);
+
+        /**
+         * Serve date-bounded searches from the time-partitioned columnar audit store
+         * instead of scanning every user's audit log
+         */
+        private boolean partitionedSearch = true;
+
+        /**
+         * Load every user's audit log into the cache in the background at startup.
+         * The auditCacheWarmer health check reports OUT_OF_SERVICE until it completes.
+         */
+        private boolean warmUpCache = false;
+
+        /**
+         * Maximum number of user audit logs loaded from storage concurrently
+         */
+        private int loadParallelism = 16;
+
+        /**
+         * How long a cross-user search waits for one user's audit log to load before
+         * leaving that user out of its results
+         */
+        private Duration loadTimeout = Duration.ofSeconds(10);
+
+        /**
+         * Estimated heap the per-user audit cache may use before least-used users are evicted
+         */
+        private DataSize cacheMaxSize = DataSize.ofMegabytes(256);
+
+        /**
+         * Filenames the download filename index may hold before least-used users are evicted
+         */
+        private long filenameIndexMaxEntries = 500_000;
+
+        /**
+         * How long a cached user's audit log is trusted before checking storage for
+         * changes written by other instances. Zero checks on every search.
+         */
+        private Duration revalidateInterval = Duration.ofSeconds(5);
+    }
 }
@@ -2,40 +2,67 @@ package com.lbg.markets.luxback.controller;
 
 import com.lbg.markets.luxback.config.LuxBackConfig;
 import com.lbg.markets.luxback.exception.StorageException;
+import com.lbg.markets.luxback.model.ObjectStat;
 import com.lbg.markets.luxback.security.SecurityUtils;
 import com.lbg.markets.luxback.service.AuditService;
 import com.lbg.markets.luxback.service.StorageService;
+import com.lbg.markets.luxback.service.StoredFile;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.IOException;
-import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 
 /**
  * Controller for file download operations.
  * Only accessible by users with ADMIN role.
- * Downloads are streamed to avoid memory issues with large files.
+ * Downloads are streamed to avoid memory issues with large files, from a single
+ * storage handle: one metadata lookup and one data stream per download.
+ * Byte ranges (Range / If-Range) are supported so interrupted downloads can resume;
+ * each range is read from storage on its own rather than skipping through the file.
+ * Local files are handed to the servlet container to send with sendfile where it
+ * supports that, so their bytes never pass through the JVM heap.
+ * Responses carry an ETag and Last-Modified date, and conditional requests for an
+ * unchanged file are answered with 304 without reading it.
  */
 @Controller
 @RequiredArgsConstructor
 @Slf4j
 public class DownloadController {
 
+    // Request attributes through which Tomcat offers, and is asked for, sendfile
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // Below this, setting up sendfile costs more than copying (Tomcat's own default)
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
     private final StorageService storageService;
     private final AuditService auditService;
     private final LuxBackConfig config;
 
     /**
-     * Download a file.
+     * Download a file, or the byte ranges of it named in a Range header.
      * Files are streamed directly from storage without buffering.
      */
     @GetMapping("/download/{username}/{filename}")
@@ -49,49 +76,271 @@ public class DownloadController {
         String path = config.getStoragePath() + "/" + username + "/" + filename;
 
         try {
-            // Check if file exists
-            if (!storageService.exists(path)) {
+            // One metadata lookup: existence, and everything needed to stream the file
+            Optional<StoredFile> opened = storageService.open(path);
+            if (opened.isEmpty()) {
                 log.warn("Download failed - file not found: path={}", path);
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
             }
+            StoredFile file = opened.get();
 
-            // Verify file is readable BEFORE committing response
-            // This ensures exceptions are caught and proper status codes returned
-            // We immediately close it and will open a fresh stream in the lambda
-            try (InputStream testStream = storageService.readFile(path)) {
-                // Just testing readability - close immediately
-            } catch (IOException e) {
-                throw new StorageException("Failed to read file: " + path, e);
-            }
+            try {
+                ObjectStat stat = file.stat();
+                String etag = etag(stat);
+
+                // The client's copy is current: nothing is read from storage or downloaded
+                if (notModified(request, stat, etag)) {
+                    file.close();
+                    return validators(ResponseEntity.status(HttpStatus.NOT_MODIFIED), stat, etag).build();
+                }
+
+                List<ByteSpan> spans = requestedSpans(request, stat, etag);
+                if (spans != null && spans.isEmpty()) {
+                    file.close();
+                    return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                            .header(HttpHeaders.CONTENT_RANGE, "bytes */" + stat.getSize())
+                            .build();
+                }
+
+                // Get original filename from audit records for better user experience
+                String originalFilename = auditService.getOriginalFilename(username, filename);
+
+                // Resumed and parallel downloads fetch many ranges; audit the one that starts the file
+                if (spans == null || spans.stream().anyMatch(span -> span.start() == 0)) {
+                    auditService.recordDownload(username, originalFilename, filename,
+                            downloaderUsername, request);
+
+                    log.info("File downloaded: owner={}, downloader={}, file={}",
+                            username, downloaderUsername, originalFilename);
+                }
 
-            // Get original filename from audit records for better user experience
-            String originalFilename = auditService.getOriginalFilename(username, filename);
+                ResponseEntity.BodyBuilder response = validators(ResponseEntity
+                        .status(spans == null ? HttpStatus.OK : HttpStatus.PARTIAL_CONTENT), stat, etag)
+                        .header(HttpHeaders.CONTENT_DISPOSITION,
+                                "attachment; filename=\"" + originalFilename + "\"")
+                        .header(HttpHeaders.ACCEPT_RANGES, "bytes");
 
-            // Create streaming response - open fresh stream inside lambda
-            // This ensures the stream is in a good state when actually used
-            StreamingResponseBody stream = outputStream -> {
-                try (InputStream inputStream = storageService.readFile(path)) {
-                    inputStream.transferTo(outputStream);
+                if (spans != null && spans.size() > 1) {
+                    return multipartResponse(response, file, spans);
                 }
-            };
 
-            // Record download audit event
-            auditService.recordDownload(username, originalFilename, filename,
-                    downloaderUsername, request);
+                ByteSpan span = spans == null ? new ByteSpan(0, stat.getSize() - 1) : spans.get(0);
+                response.header(HttpHeaders.CONTENT_TYPE, "application/octet-stream")
+                        .contentLength(span.length());
+                if (spans != null) {
+                    response.header(HttpHeaders.CONTENT_RANGE, span.contentRange(stat.getSize()));
+                }
 
-            log.info("File downloaded: owner={}, downloader={}, file={}",
-                    username, downloaderUsername, originalFilename);
+                // Local files go straight from disk to the socket when the server can do that
+                if (sendfile(request, file, span)) {
+                    file.close();
+                    return response.build();
+                }
 
-            // Return streaming response with appropriate headers
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION,
-                            "attachment; filename=\"" + originalFilename + "\"")
-                    .header(HttpHeaders.CONTENT_TYPE, "application/octet-stream")
-                    .body(stream);
+                // Stream the handle opened above rather than looking the file up again
+                return response.body(outputStream -> {
+                    try (file) {
+                        file.transferTo(span.start(), span.length(), outputStream);
+                    }
+                });
+
+            } catch (RuntimeException e) {
+                file.close();
+                throw e;
+            }
 
         } catch (StorageException e) {
             log.error("Download failed: owner=" + username + ", file=" + filename, e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Answer several ranges as multipart/byteranges, each part read from storage on its own
+     */
+    private ResponseEntity<StreamingResponseBody> multipartResponse(ResponseEntity.BodyBuilder response,
+                                                                    StoredFile file, List<ByteSpan> spans) {
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        long size = file.stat().getSize();
+
+        List<byte[]> partHeaders = new ArrayList<>(spans.size());
+        long contentLength = 0;
+        for (ByteSpan span : spans) {
+            byte[] partHeader = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": application/octet-stream\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + span.contentRange(size) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(partHeader);
+            contentLength += partHeader.length + span.length();
+        }
+        byte[] end = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += end.length;
+
+        return response
+                .header(HttpHeaders.CONTENT_TYPE, "multipart/byteranges; boundary=" + boundary)
+                .contentLength(contentLength)
+                .body(outputStream -> {
+                    try (file) {
+                        for (int i = 0; i < spans.size(); i++) {
+                            outputStream.write(partHeaders.get(i));
+                            ByteSpan span = spans.get(i);
+                            file.transferTo(span.start(), span.length(), outputStream);
+                        }
+                        outputStream.write(end);
+                    }
+                });
+    }
+
+    /**
+     * Hand a local file to the servlet container to send with sendfile, if the
+     * container supports it and the range is large enough to benefit. The
+     * container reads the file itself after this request returns.
+     *
+     * @return whether the container will send the range
+     */
+    private static boolean sendfile(HttpServletRequest request, StoredFile file, ByteSpan span) {
+        Optional<Path> localPath = file.localPath();
+        if (localPath.isEmpty() || span.length() < SENDFILE_MIN_SIZE
+                || !Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            return false;
+        }
+        // Conditional GETs are answered above, but Spring may still turn one into a 304,
+        // and Tomcat would send the file after it
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                || request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null) {
+            return false;
+        }
+        request.setAttribute(SENDFILE_FILENAME, localPath.get().toAbsolutePath().normalize().toString());
+        request.setAttribute(SENDFILE_START, span.start());
+        request.setAttribute(SENDFILE_END, span.end() + 1);
+        return true;
+    }
+
+    /**
+     * The byte ranges to send, from the Range header.
+     *
+     * @return null to send the whole file (no Range header, a stale If-Range, or a Range
+     * header that is malformed or asks for more than the file), or an empty list if no
+     * requested range overlaps the file
+     */
+    private static List<ByteSpan> requestedSpans(HttpServletRequest request, ObjectStat stat, String etag) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !ifRangeMatches(request.getHeader(HttpHeaders.IF_RANGE), stat, etag)) {
+            return null;
+        }
+
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            log.debug("Ignoring invalid Range header: {}", rangeHeader);
+            return null;
+        }
+
+        long size = stat.getSize();
+        List<ByteSpan> spans = new ArrayList<>(ranges.size());
+        long total = 0;
+        for (HttpRange range : ranges) {
+            long start = range.getRangeStart(size);
+            long end = range.getRangeEnd(size);
+            if (start >= size || start > end) {
+                continue; // Unsatisfiable; the other ranges may still be served
+            }
+            ByteSpan span = new ByteSpan(start, end);
+            total += span.length();
+            spans.add(span);
+        }
+        // Overlapping ranges adding up to more than the file are cheaper sent as the file
+        return total > size ? null : spans;
+    }
+
+    /**
+     * Whether an If-Range validator still describes the file, so the ranges apply
+     */
+    private static boolean ifRangeMatches(String ifRange, ObjectStat stat, String etag) {
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // Strong comparison: a weak tag never matches
+            return ifRange.equals(etag);
+        }
+        Long date = httpDate(ifRange);
+        return date != null && stat.getUpdated() != null && stat.getUpdated().getEpochSecond() == date;
+    }
+
+    /**
+     * Whether the client's cached copy is current: any If-None-Match tag matches,
+     * or without If-None-Match, the file is no newer than If-Modified-Since
+     */
+    private static boolean notModified(HttpServletRequest request, ObjectStat stat, String etag) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                // Weak comparison, as If-None-Match uses
+                String candidate = tag.trim();
+                if (candidate.startsWith("W/")) {
+                    candidate = candidate.substring(2);
+                }
+                if (candidate.equals("*") || candidate.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        Long ifModifiedSince = httpDate(request.getHeader(HttpHeaders.IF_MODIFIED_SINCE));
+        return ifModifiedSince != null && stat.getUpdated() != null
+                && stat.getUpdated().getEpochSecond() <= ifModifiedSince;
+    }
+
+    /**
+     * Epoch seconds of an HTTP date header value, or null if absent or not a date
+     */
+    private static Long httpDate(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Add the validators clients cache against. Stored names are only unique to the
+     * second, so a path can be rewritten: caches must revalidate, which is a 304
+     * when the file is unchanged. Private, as downloads are restricted to admins.
+     */
+    private static <B extends ResponseEntity.HeadersBuilder<B>> B validators(B builder, ObjectStat stat,
+                                                                             String etag) {
+        builder.eTag(etag).cacheControl(CacheControl.noCache().cachePrivate());
+        if (stat.getUpdated() != null) {
+            builder.lastModified(stat.getUpdated());
+        }
+        return builder;
+    }
+
+    /**
+     * Strong entity tag from the storage generation (GCS object generation, or
+     * modification time on local storage) and size, changing whenever the stored
+     * content is replaced
+     */
+    private static String etag(ObjectStat stat) {
+        return "\"" + Long.toHexString(stat.getGeneration()) + "-" + Long.toHexString(stat.getSize()) + "\"";
+    }
+
+    /**
+     * Inclusive byte range within the file
+     */
+    private record ByteSpan(long start, long end) {
+
+        long length() {
+            return end - start + 1;
+        }
+
+        String contentRange(long size) {
+            return "bytes " + start + "-" + end + "/" + size;
+        }
+    }
+}
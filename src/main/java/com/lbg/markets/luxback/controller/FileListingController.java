@@ -1,6 +1,8 @@
 package com.lbg.markets.luxback.controller;
 
+import com.lbg.markets.luxback.model.AuditCursor;
 import com.lbg.markets.luxback.model.AuditEvent;
+import com.lbg.markets.luxback.model.AuditPage;
 import com.lbg.markets.luxback.model.SearchCriteria;
 import com.lbg.markets.luxback.service.AuditService;
 import lombok.RequiredArgsConstructor;
@@ -31,6 +33,8 @@ public class FileListingController {
     /**
      * Display file listing page with search and pagination.
      * All parameters are optional - no filters means show all files.
+     * "Next" links carry a cursor holding the first page's total, so paging
+     * forward resumes where the previous page ended instead of recounting.
      */
     @GetMapping("/files")
     @PreAuthorize("hasRole('ADMIN')")
@@ -40,47 +44,74 @@ public class FileListingController {
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
             @RequestParam(required = false) String username,
             @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) String cursor,
             Model model) {
 
         // Convert empty strings to null to avoid filtering on empty values
         filename = (filename != null && filename.isBlank()) ? null : filename;
         username = (username != null && username.isBlank()) ? null : username;
 
-        // Build search criteria
+        // Build search criteria - the listing only shows uploads
         SearchCriteria criteria = SearchCriteria.builder()
                 .filename(filename)
                 .startDate(startDate)
                 .endDate(endDate)
                 .username(username)
+                .eventType("UPLOAD")
                 .build();
 
-        // Search all audit events (fast in-memory search after initial cache load)
-        List<AuditEvent> allResults = auditService.searchAllAudit(criteria);
+        // Fetch just the requested page (fast in-memory merge after initial cache load)
+        AuditCursor position = decodeCursor(cursor);
+        AuditPage results = position != null
+                ? auditService.searchAfter(criteria, position, PAGE_SIZE, position.getTotal() == null)
+                : auditService.searchPage(criteria, page * PAGE_SIZE, PAGE_SIZE);
+        List<AuditEvent> pageResults = results.getEvents();
 
-        // Filter to only show UPLOAD events for file listing
-        List<AuditEvent> uploadEvents = allResults.stream()
-                .filter(event -> "UPLOAD".equals(event.getEventType()))
-                .toList();
-
-        // Paginate results
-        int totalResults = uploadEvents.size();
-        int totalPages = (totalResults + PAGE_SIZE - 1) / PAGE_SIZE;
-        int start = page * PAGE_SIZE;
-        int end = Math.min(start + PAGE_SIZE, totalResults);
-
-        List<AuditEvent> pageResults = (start < totalResults)
-                ? uploadEvents.subList(start, end)
-                : List.of();
+        long totalCount = results.getTotalResults() != null ? results.getTotalResults()
+                : carriedTotal(position.getTotal(), page, pageResults.size(), results.getNextCursor() != null);
+        int totalResults = (int) Math.min(totalCount, Integer.MAX_VALUE);
+        int totalPages = (int) Math.min((totalCount + PAGE_SIZE - 1) / PAGE_SIZE, Integer.MAX_VALUE);
 
         // Add attributes to model
         model.addAttribute("files", pageResults);
         model.addAttribute("totalResults", totalResults);
         model.addAttribute("totalPages", totalPages);
         model.addAttribute("currentPage", page);
+        // Links to at most two pages either side of this one
+        int lastPageLink = Math.max(0, Math.min(totalPages - 1, page + 2));
+        model.addAttribute("firstPageLink", Math.max(0, Math.min(page - 2, lastPageLink)));
+        model.addAttribute("lastPageLink", lastPageLink);
         model.addAttribute("criteria", criteria);
+        model.addAttribute("nextCursor", results.getNextCursor());
 
         log.debug("File listing: page={}, results={}, total={}", page, pageResults.size(), totalResults);
 
         return "file-listing";
     }
-}
\ No newline at end of file
+
+    /**
+     * Decode the cursor when one is given, falling back to offset paging
+     *
+     * @return null if there is no usable cursor
+     */
+    private AuditCursor decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            return AuditCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            log.debug("Ignoring malformed listing cursor: {}", cursor);
+            return null;
+        }
+    }
+
+    /**
+     * Total carried in a cursor from the first page. It comes back from the client and is
+     * approximate if events were recorded since, so keep it consistent with the pages served.
+     */
+    private long carriedTotal(long total, int page, int pageSize, boolean hasNext) {
+        long seen = (long) page * PAGE_SIZE + pageSize;
+        return hasNext ? Math.max(total, seen + 1) : seen;
+    }
+}
@@ -0,0 +1,82 @@
+package com.lbg.markets.luxback.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in newest-first audit search results: the last event of the
+ * previous page, plus the match count from the first page so later pages
+ * need not recount. Passed between requests as an opaque URL-safe token.
+ */
+@Data
+@Builder
+public class AuditCursor {
+
+    /**
+     * Timestamp of the last event seen
+     */
+    private Instant timestamp;
+
+    /**
+     * ID of the last event seen, breaking timestamp ties
+     */
+    private String eventId;
+
+    /**
+     * Total matches counted when paging started, or null if not counted
+     */
+    private Long total;
+
+    /**
+     * Cursor positioned just after the given event
+     */
+    public static AuditCursor after(AuditEvent event) {
+        return after(event, null);
+    }
+
+    /**
+     * Cursor positioned just after the given event, carrying a total already counted
+     */
+    public static AuditCursor after(AuditEvent event, Long total) {
+        return AuditCursor.builder()
+                .timestamp(event.getTimestamp())
+                .eventId(event.getEventId())
+                .total(total)
+                .build();
+    }
+
+    /**
+     * Encode as an opaque token
+     */
+    public String encode() {
+        String raw = timestamp + "|" + eventId + (total != null ? "|" + total : "");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a token produced by {@link #encode()}
+     *
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static AuditCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", -1);
+            if (parts.length < 2 || parts.length > 3) {
+                throw new IllegalArgumentException("Malformed cursor: " + token);
+            }
+            return AuditCursor.builder()
+                    .timestamp(Instant.parse(parts[0]))
+                    .eventId(parts[1])
+                    .total(parts.length == 3 ? Long.valueOf(parts[2]) : null)
+                    .build();
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cursor: " + token, e);
+        }
+    }
+}
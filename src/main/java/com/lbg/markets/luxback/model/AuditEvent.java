@@ -1,9 +1,13 @@
 package com.lbg.markets.luxback.model;
 
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Data;
+import lombok.Setter;
 
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
 
 /**
  * Represents a single audit event (upload or download).
@@ -28,6 +32,13 @@ public class AuditEvent {
      */
     private Instant timestamp;
 
+    /**
+     * Day of the event in the server's time zone, as a {@link LocalDate#toEpochDay() epoch day}.
+     * Derived from the timestamp when it is set, so date filters compare primitives.
+     */
+    @Setter(AccessLevel.NONE)
+    private long epochDay;
+
     /**
      * Username of the file owner
      */
@@ -72,4 +83,21 @@ public class AuditEvent {
      * Username of who performed the action (uploader or downloader)
      */
     private String actorUsername;
+
+    public void setTimestamp(Instant timestamp) {
+        this.timestamp = timestamp;
+        this.epochDay = toEpochDay(timestamp);
+    }
+
+    private static long toEpochDay(Instant timestamp) {
+        return timestamp == null ? 0 : LocalDate.ofInstant(timestamp, ZoneId.systemDefault()).toEpochDay();
+    }
+
+    public static class AuditEventBuilder {
+        public AuditEventBuilder timestamp(Instant timestamp) {
+            this.timestamp = timestamp;
+            this.epochDay = toEpochDay(timestamp);
+            return this;
+        }
+    }
 }
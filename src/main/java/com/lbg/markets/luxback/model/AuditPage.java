@@ -0,0 +1,30 @@
+package com.lbg.markets.luxback.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One page of audit search results, newest first.
+ */
+@Data
+@Builder
+public class AuditPage {
+
+    /**
+     * Events on this page
+     */
+    private List<AuditEvent> events;
+
+    /**
+     * Total number of events matching the search across all pages,
+     * or null when the caller did not ask for it to be counted
+     */
+    private Long totalResults;
+
+    /**
+     * Cursor token for the next page, or null if this is the last page
+     */
+    private String nextCursor;
+}
@@ -0,0 +1,42 @@
+package com.lbg.markets.luxback.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * Metadata about a stored object, fetched without reading its content.
+ * Used to tell whether an object has changed since it was last read, and to
+ * describe it to clients without opening it.
+ */
+@Data
+@Builder
+public class ObjectStat {
+
+    /**
+     * Storage path
+     */
+    private String path;
+
+    /**
+     * Object size in bytes
+     */
+    private long size;
+
+    /**
+     * Version of the object's content: the GCS generation, or the last-modified
+     * time in microseconds on local storage. Changes whenever the content is replaced.
+     */
+    private long generation;
+
+    /**
+     * When the object was last modified
+     */
+    private Instant updated;
+
+    /**
+     * MIME type recorded with the object, if known
+     */
+    private String contentType;
+}
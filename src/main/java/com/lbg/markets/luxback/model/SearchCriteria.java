@@ -23,6 +23,11 @@ public class SearchCriteria {
      */
     private String username;
 
+    /**
+     * Filter by event type (UPLOAD or DOWNLOAD)
+     */
+    private String eventType;
+
     /**
      * Filter events on or after this date
      */
@@ -0,0 +1,74 @@
+package com.lbg.markets.luxback.service;
+
+import com.lbg.markets.luxback.config.LuxBackConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Preloads every user's audit log once the application has started, so the
+ * first cross-user search after a deploy is served from the cache.
+ * Enabled with {@code luxback.audit.warm-up-cache}.
+ * <p>
+ * Reports OUT_OF_SERVICE through the actuator health endpoint until the cache
+ * is warm, keeping the instance out of the load balancer meanwhile. A failed
+ * warm-up reports UP: searches still load users on demand.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AuditCacheWarmer implements HealthIndicator {
+
+    private final AuditService auditService;
+    private final LuxBackConfig config;
+
+    // Null until the warm-up has finished (or if it is disabled)
+    private volatile Health result;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (config.getAudit().isWarmUpCache()) {
+            Thread.ofVirtual().name("audit-cache-warmer").start(this::warmUp);
+        }
+    }
+
+    /**
+     * Load all users into the audit cache, recording the outcome for {@link #health()}
+     */
+    void warmUp() {
+        Instant started = Instant.now();
+        try {
+            int users = auditService.warmCache();
+            Duration elapsed = Duration.between(started, Instant.now());
+            log.info("Audit cache warmed: {} users in {}ms", users, elapsed.toMillis());
+            result = Health.up()
+                    .withDetail("users", users)
+                    .withDetail("durationMs", elapsed.toMillis())
+                    .build();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result = Health.up().withDetail("warmUp", "interrupted").build();
+
+        } catch (RuntimeException e) {
+            log.warn("Audit cache warm-up failed, users will be loaded on demand", e);
+            result = Health.up().withDetail("warmUp", "failed").withException(e).build();
+        }
+    }
+
+    @Override
+    public Health health() {
+        if (!config.getAudit().isWarmUpCache()) {
+            return Health.up().withDetail("warmUp", "disabled").build();
+        }
+        Health current = result;
+        return current != null ? current : Health.outOfService().withDetail("warmUp", "in progress").build();
+    }
+}
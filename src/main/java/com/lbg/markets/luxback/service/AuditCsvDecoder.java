@@ -0,0 +1,448 @@
+package com.lbg.markets.luxback.service;
+
+import com.lbg.markets.luxback.model.AuditEvent;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+
+/**
+ * Streaming decoder for audit CSV in the fixed {@link AuditLogStore#CSV_HEADERS} layout.
+ * Fields are sliced out of a reusable character buffer and mapped to
+ * {@link AuditEvent} by column index, without per-record maps or header
+ * lookups. Values that repeat across records are resolved through a
+ * per-decoder pool: event type, usernames and content type to their canonical
+ * instance in {@link AuditStringDictionary#SHARED}, so each distinct value is
+ * allocated once per process; IP address and user agent, which clients choose,
+ * only within the decoder, so they are never retained past the load.
+ * <p>
+ * Accepts RFC 4180 quoting as written by commons-csv, with LF or CRLF line endings.
+ */
+final class AuditCsvDecoder implements Closeable {
+
+    // Field positions in AuditLogStore.CSV_HEADERS
+    private static final int EVENT_ID = 0;
+    private static final int EVENT_TYPE = 1;
+    private static final int TIMESTAMP = 2;
+    private static final int USERNAME = 3;
+    private static final int FILENAME = 4;
+    private static final int STORED_AS = 5;
+    private static final int FILE_SIZE = 6;
+    private static final int CONTENT_TYPE = 7;
+    private static final int IP_ADDRESS = 8;
+    private static final int USER_AGENT = 9;
+    private static final int SESSION_ID = 10;
+    private static final int ACTOR_USERNAME = 11;
+    private static final int COLUMNS = 12;
+
+    private final Reader in;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    private boolean eof;
+
+    // Current record: all field characters back to back, with per-column bounds
+    private char[] record = new char[512];
+    private int recordLength;
+    private final int[] starts = new int[COLUMNS];
+    private final int[] ends = new int[COLUMNS];
+
+    private final Interner interner = new Interner(true);
+    private final Interner clientValues = new Interner(false);
+    private long line;
+
+    AuditCsvDecoder(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Read the first record and check it is the standard header row
+     *
+     * @return false if the header is missing or differs from {@link AuditLogStore#CSV_HEADERS}
+     */
+    boolean readHeader() throws IOException {
+        if (readRecord() != COLUMNS) {
+            return false;
+        }
+        for (int column = 0; column < COLUMNS; column++) {
+            if (!fieldEquals(column, AuditLogStore.CSV_HEADERS[column])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decode the next record
+     *
+     * @return the event, or null at end of input
+     * @throws IOException if the record is malformed
+     */
+    AuditEvent next() throws IOException {
+        int fields;
+        do {
+            fields = readRecord();
+        } while (fields == 0 && !eof); // Skip blank lines
+
+        if (fields == 0) {
+            return null;
+        }
+        if (fields != COLUMNS) {
+            throw new IOException("Malformed audit record on line " + line + ": expected "
+                    + COLUMNS + " fields, found " + fields);
+        }
+
+        Instant timestamp = instant(TIMESTAMP);
+
+        return AuditEvent.builder()
+                .eventId(string(EVENT_ID))
+                .eventType(interned(EVENT_TYPE))
+                .timestamp(timestamp)
+                .username(interned(USERNAME))
+                .filename(string(FILENAME))
+                .storedAs(string(STORED_AS))
+                .fileSize(optionalLong(FILE_SIZE))
+                .contentType(optional(interned(CONTENT_TYPE)))
+                .ipAddress(clientValue(IP_ADDRESS))
+                .userAgent(optional(clientValue(USER_AGENT)))
+                .sessionId(optional(string(SESSION_ID)))
+                .actorUsername(interned(ACTOR_USERNAME))
+                .build();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Read one record into the record buffer
+     *
+     * @return the number of fields, 0 for a blank line or end of input
+     */
+    private int readRecord() throws IOException {
+        recordLength = 0;
+        int fields = 0;
+        int c = read();
+        if (c < 0) {
+            return 0;
+        }
+        line++;
+        if (c == '\n' || c == '\r') {
+            if (c == '\r') {
+                skipNewline();
+            }
+            return 0;
+        }
+
+        while (true) {
+            if (fields == COLUMNS) {
+                skipLine(c); // Too many fields - consume the rest and report the count
+                return COLUMNS + 1;
+            }
+            starts[fields] = recordLength;
+
+            if (c == '"') {
+                c = readQuoted();
+            } else {
+                while (c >= 0 && c != ',' && c != '\n' && c != '\r') {
+                    append((char) c);
+                    c = read();
+                }
+            }
+            ends[fields++] = recordLength;
+
+            if (c == ',') {
+                c = read();
+                continue;
+            }
+            if (c == '\r') {
+                skipNewline();
+            } else if (c >= 0 && c != '\n') {
+                throw new IOException("Unexpected character after quoted field on line " + line);
+            }
+            return fields;
+        }
+    }
+
+    /**
+     * Read a quoted field's content; the opening quote has been consumed
+     *
+     * @return the character following the closing quote
+     */
+    private int readQuoted() throws IOException {
+        while (true) {
+            int c = read();
+            if (c < 0) {
+                throw new IOException("Unterminated quoted field on line " + line);
+            }
+            if (c == '"') {
+                c = read();
+                if (c != '"') {
+                    return c; // Closing quote
+                }
+            } else if (c == '\n') {
+                line++;
+            }
+            append((char) c);
+        }
+    }
+
+    private void skipLine(int c) throws IOException {
+        boolean quoted = false;
+        while (c >= 0 && (quoted || (c != '\n' && c != '\r'))) {
+            if (c == '"') {
+                quoted = !quoted;
+            }
+            c = read();
+        }
+        if (c == '\r') {
+            skipNewline();
+        }
+    }
+
+    /**
+     * Consume a '\n' following '\r' if present
+     */
+    private void skipNewline() throws IOException {
+        if ((position < limit || fill()) && buffer[position] == '\n') {
+            position++;
+        }
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        int n = in.read(buffer, 0, buffer.length);
+        if (n <= 0) {
+            eof = true;
+            return false;
+        }
+        position = 0;
+        limit = n;
+        return true;
+    }
+
+    private void append(char c) {
+        if (recordLength == record.length) {
+            record = Arrays.copyOf(record, record.length * 2);
+        }
+        record[recordLength++] = c;
+    }
+
+    private boolean fieldEquals(int column, String value) {
+        int length = ends[column] - starts[column];
+        if (length != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (record[starts[column] + i] != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String string(int column) {
+        return new String(record, starts[column], ends[column] - starts[column]);
+    }
+
+    private String interned(int column) {
+        return interner.intern(record, starts[column], ends[column] - starts[column]);
+    }
+
+    private String clientValue(int column) {
+        return clientValues.intern(record, starts[column], ends[column] - starts[column]);
+    }
+
+    private static String optional(String value) {
+        return value.isBlank() ? null : value;
+    }
+
+    /**
+     * Parse a timestamp as written by {@link Instant#toString()},
+     * e.g. 2024-01-01T09:30:00Z or 2024-01-01T09:30:00.123Z.
+     * Other ISO-8601 forms go through {@link Instant#parse}.
+     */
+    private Instant instant(int column) throws IOException {
+        int start = starts[column];
+        int length = ends[column] - starts[column];
+        if (length >= 20 && length <= 30 && record[start + 4] == '-' && record[start + 7] == '-'
+                && record[start + 10] == 'T' && record[start + 13] == ':' && record[start + 16] == ':'
+                && record[ends[column] - 1] == 'Z') {
+            int year = digits(start, 4);
+            int month = digits(start + 5, 2);
+            int day = digits(start + 8, 2);
+            int hour = digits(start + 11, 2);
+            int minute = digits(start + 14, 2);
+            int second = digits(start + 17, 2);
+            int nanos = fraction(start + 19, ends[column] - 1);
+
+            if (year >= 0 && month >= 1 && month <= 12 && day >= 1 && day <= 31 && hour >= 0 && hour < 24
+                    && minute >= 0 && minute < 60 && second >= 0 && second < 60 && nanos >= 0) {
+                long epochDay;
+                try {
+                    epochDay = LocalDate.of(year, month, day).toEpochDay();
+                } catch (DateTimeException e) {
+                    throw new IOException("Malformed audit timestamp on line " + line, e);
+                }
+                return Instant.ofEpochSecond(epochDay * 86_400 + hour * 3_600L + minute * 60L + second, nanos);
+            }
+        }
+        try {
+            return Instant.parse(string(column));
+        } catch (DateTimeParseException e) {
+            throw new IOException("Malformed audit timestamp on line " + line, e);
+        }
+    }
+
+    /**
+     * Parse a fixed-width run of digits, or -1 if any character is not a digit
+     */
+    private int digits(int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = record[i];
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Parse an optional ".nnn" fraction of a second as nanoseconds, or -1 if malformed
+     */
+    private int fraction(int start, int end) {
+        if (start == end) {
+            return 0;
+        }
+        int count = end - start - 1;
+        if (record[start] != '.' || count < 1 || count > 9) {
+            return -1;
+        }
+        int value = digits(start + 1, count);
+        for (int i = count; i < 9 && value >= 0; i++) {
+            value *= 10;
+        }
+        return value;
+    }
+
+    /**
+     * Parse a decimal as {@link Long#parseLong} does, or null if blank or not a number.
+     * Plain digit runs that cannot overflow are parsed in place.
+     */
+    private Long optionalLong(int column) {
+        int start = starts[column];
+        int end = ends[column];
+        if (end - start <= 18) {
+            long value = 0;
+            int i = start;
+            while (i < end && record[i] >= '0' && record[i] <= '9') {
+                value = value * 10 + (record[i++] - '0');
+            }
+            if (i == end && i > start) {
+                return value;
+            }
+        }
+
+        // Signs, long values, whitespace and garbage
+        String value = string(column);
+        if (value.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Open-addressing string pool keyed on character ranges, so a repeated
+     * value is found without first allocating a String for it
+     */
+    private static final class Interner {
+        private final boolean shared;
+        private String[] table = new String[256];
+        private int size;
+
+        /**
+         * @param shared whether new values resolve to their instance in the shared dictionary
+         */
+        Interner(boolean shared) {
+            this.shared = shared;
+        }
+
+        String intern(char[] chars, int offset, int length) {
+            int hash = 0;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + chars[offset + i];
+            }
+
+            int mask = table.length - 1;
+            int slot = mix(hash) & mask;
+            for (String candidate = table[slot]; candidate != null; candidate = table[slot]) {
+                if (matches(candidate, chars, offset, length)) {
+                    return candidate;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            String value = new String(chars, offset, length);
+            if (shared) {
+                value = AuditStringDictionary.SHARED.intern(value);
+            }
+            table[slot] = value;
+            if (++size * 2 > table.length) {
+                resize();
+            }
+            return value;
+        }
+
+        private static boolean matches(String candidate, char[] chars, int offset, int length) {
+            if (candidate.length() != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (candidate.charAt(i) != chars[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void resize() {
+            String[] old = table;
+            table = new String[old.length * 2];
+            int mask = table.length - 1;
+            for (String value : old) {
+                if (value != null) {
+                    int slot = mix(value.hashCode()) & mask;
+                    while (table[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    table[slot] = value;
+                }
+            }
+        }
+
+        private static int mix(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.lbg.markets.luxback.service;
+
+import com.lbg.markets.luxback.model.AuditEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Compact, append-only column store for cached audit events, in arrival order.
+ * Instead of an object graph per event, rows are held in primitive arrays:
+ * <ul>
+ *   <li>timestamps as epoch seconds plus nanos, and the event's epoch day</li>
+ *   <li>canonical UUID event IDs as two longs (other IDs as strings)</li>
+ *   <li>repeated values (event type, usernames, content type) as IDs in the
+ *       shared {@link AuditStringDictionary}; client-supplied values (IP, user
+ *       agent), session IDs, and any values the shared dictionary has no room
+ *       for, as codes into a dictionary local to this store</li>
+ *   <li>filenames as UTF-8 in a shared byte arena</li>
+ * </ul>
+ * Readers see rows through an immutable {@link Block}, which filters and orders
+ * on the columns directly; an {@link AuditEvent} is built only for rows that are
+ * returned. Appends write rows past every published row count and replace the
+ * block only when an array grows.
+ * <p>
+ * Not thread-safe for writers; the owning {@link UserAuditLog} serializes appends.
+ */
+final class AuditEventColumns {
+
+    // Dictionary-encoded columns
+    static final int EVENT_TYPE = 0;
+    static final int USERNAME = 1;
+    static final int CONTENT_TYPE = 2;
+    static final int IP_ADDRESS = 3;
+    static final int USER_AGENT = 4;
+    static final int SESSION_ID = 5;
+    static final int ACTOR_USERNAME = 6;
+    private static final int CODED_COLUMNS = 7;
+
+    // Arena-encoded columns
+    private static final int FILENAME = 0;
+    private static final int STORED_AS = 1;
+    private static final int TEXT_COLUMNS = 2;
+
+    // Codes >= 0 are shared dictionary IDs; local dictionary entries are encoded from -2 down
+    private static final int NULL_CODE = -1;
+    private static final long NULL_TEXT = -1L;
+    private static final long NO_SIZE = Long.MIN_VALUE;
+
+    private Block block;
+    private int rows;
+    private int textUsed;
+
+    // Value -> local dictionary index; the block holds the reverse mapping
+    private final Map<String, Integer> localCodes = new HashMap<>();
+    private long dictionaryBytes;
+
+    AuditEventColumns(int capacity) {
+        int rowCapacity = Math.max(16, capacity);
+        block = new Block(new long[rowCapacity], new int[rowCapacity], new int[rowCapacity], new long[rowCapacity],
+                new long[rowCapacity], new long[rowCapacity], new String[rowCapacity],
+                new int[CODED_COLUMNS][rowCapacity], new long[rowCapacity * TEXT_COLUMNS],
+                new byte[rowCapacity * 32], new String[16]);
+    }
+
+    /**
+     * The current arrays, covering every row appended so far
+     */
+    Block block() {
+        return block;
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    /**
+     * Append an event as the next row
+     *
+     * @return the row number
+     */
+    int append(AuditEvent event) {
+        if (rows == block.seconds.length) {
+            block = block.withRowCapacity(rows + (rows >> 1) + 1);
+        }
+        int row = rows;
+
+        Instant timestamp = event.getTimestamp();
+        block.seconds[row] = timestamp.getEpochSecond();
+        block.nanos[row] = timestamp.getNano();
+        block.epochDays[row] = Math.toIntExact(event.getEpochDay());
+        block.fileSizes[row] = event.getFileSize() == null ? NO_SIZE : event.getFileSize();
+
+        UUID uuid = canonicalUuid(event.getEventId());
+        if (uuid != null) {
+            block.idHigh[row] = uuid.getMostSignificantBits();
+            block.idLow[row] = uuid.getLeastSignificantBits();
+        } else {
+            block.otherIds[row] = event.getEventId();
+        }
+
+        encode(row, EVENT_TYPE, event.getEventType());
+        encode(row, USERNAME, event.getUsername());
+        encode(row, CONTENT_TYPE, event.getContentType());
+        encode(row, IP_ADDRESS, event.getIpAddress());
+        encode(row, USER_AGENT, event.getUserAgent());
+        encode(row, SESSION_ID, event.getSessionId());
+        encode(row, ACTOR_USERNAME, event.getActorUsername());
+
+        block.textRefs[row * TEXT_COLUMNS + FILENAME] = store(event.getFilename());
+        block.textRefs[row * TEXT_COLUMNS + STORED_AS] = store(event.getStoredAs());
+
+        rows++;
+        return row;
+    }
+
+    /**
+     * Code of a value in a dictionary-encoded column, or -1 if it has never been stored
+     */
+    int codeOf(String value) {
+        int id = AuditStringDictionary.SHARED.idOf(value);
+        if (id != AuditStringDictionary.NONE) {
+            return id;
+        }
+        Integer local = value == null ? null : localCodes.get(value);
+        return local == null ? NULL_CODE : localCode(local);
+    }
+
+    /**
+     * Approximate heap retained by the arrays and dictionary
+     */
+    long estimatedBytes() {
+        Block b = block;
+        long perRow = 8 + 4 + 4 + 8 + 8 + 8 + 4 + 4L * CODED_COLUMNS + 8L * TEXT_COLUMNS;
+        return perRow * b.seconds.length + b.text.length + 4L * b.dictionary.length + dictionaryBytes;
+    }
+
+    private void encode(int row, int column, String value) {
+        if (value == null) {
+            block.codes[column][row] = NULL_CODE;
+            return;
+        }
+        if (isSharedColumn(column)) {
+            int id = AuditStringDictionary.SHARED.idFor(value);
+            if (id != AuditStringDictionary.NONE) {
+                block.codes[column][row] = id;
+                return;
+            }
+        }
+
+        Integer index = localCodes.get(value);
+        if (index == null) {
+            index = localCodes.size();
+            if (index == block.dictionary.length) {
+                block = block.withDictionaryCapacity(index * 2);
+            }
+            block.dictionary[index] = value;
+            localCodes.put(value, index);
+            dictionaryBytes += 40 + value.length() + 48; // String plus map entry
+        }
+        block.codes[column][row] = localCode(index);
+    }
+
+    /**
+     * Whether a column's values go in the shared dictionary rather than the local one
+     */
+    private static boolean isSharedColumn(int column) {
+        return column == EVENT_TYPE || column == USERNAME || column == CONTENT_TYPE || column == ACTOR_USERNAME;
+    }
+
+    private static int localCode(int index) {
+        return -2 - index;
+    }
+
+    private long store(String value) {
+        if (value == null) {
+            return NULL_TEXT;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (textUsed + bytes.length > block.text.length) {
+            block = block.withTextCapacity(Math.max(textUsed + bytes.length, block.text.length * 2));
+        }
+        System.arraycopy(bytes, 0, block.text, textUsed, bytes.length);
+        long ref = ((long) textUsed << 32) | bytes.length;
+        textUsed += bytes.length;
+        return ref;
+    }
+
+    /**
+     * The UUID if the ID is its canonical string form, so ordering by the two
+     * longs (unsigned) matches ordering by the string
+     */
+    private static UUID canonicalUuid(String eventId) {
+        if (eventId == null || eventId.length() != 36) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(eventId);
+            return uuid.toString().equals(eventId) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Immutable view of the column arrays. Rows below the count a reader was
+     * given never change; later rows may be written in place by appends.
+     */
+    record Block(long[] seconds, int[] nanos, int[] epochDays, long[] fileSizes, long[] idHigh, long[] idLow, String[] otherIds,
+                 int[][] codes, long[] textRefs, byte[] text, String[] dictionary) {
+
+        /**
+         * Materialize a row as an event
+         */
+        AuditEvent event(int row) {
+            return AuditEvent.builder()
+                    .eventId(eventId(row))
+                    .eventType(string(EVENT_TYPE, row))
+                    .timestamp(Instant.ofEpochSecond(seconds[row], nanos[row]))
+                    .username(string(USERNAME, row))
+                    .filename(text(row, FILENAME))
+                    .storedAs(text(row, STORED_AS))
+                    .fileSize(fileSizes[row] == NO_SIZE ? null : fileSizes[row])
+                    .contentType(string(CONTENT_TYPE, row))
+                    .ipAddress(string(IP_ADDRESS, row))
+                    .userAgent(string(USER_AGENT, row))
+                    .sessionId(string(SESSION_ID, row))
+                    .actorUsername(string(ACTOR_USERNAME, row))
+                    .build();
+        }
+
+        int code(int column, int row) {
+            return codes[column][row];
+        }
+
+        String filename(int row) {
+            return text(row, FILENAME);
+        }
+
+        long epochDay(int row) {
+            return epochDays[row];
+        }
+
+        String eventType(int row) {
+            return string(EVENT_TYPE, row);
+        }
+
+        String username(int row) {
+            return string(USERNAME, row);
+        }
+
+        /**
+         * Compare two rows in {@link UserAuditLog#ORDER}
+         */
+        int compare(int a, int b) {
+            return compare(this, a, this, b);
+        }
+
+        /**
+         * Compare rows of two blocks, such as two users' logs, in {@link UserAuditLog#ORDER}
+         */
+        static int compare(Block x, int a, Block y, int b) {
+            int result = Long.compare(x.seconds[a], y.seconds[b]);
+            if (result == 0) {
+                result = Integer.compare(x.nanos[a], y.nanos[b]);
+            }
+            if (result != 0) {
+                return result;
+            }
+            if (x.otherIds[a] == null && y.otherIds[b] == null) {
+                result = Long.compareUnsigned(x.idHigh[a], y.idHigh[b]);
+                return result != 0 ? result : Long.compareUnsigned(x.idLow[a], y.idLow[b]);
+            }
+            return x.eventId(a).compareTo(y.eventId(b));
+        }
+
+        /**
+         * Compare a row with an event in {@link UserAuditLog#ORDER}
+         */
+        int compare(int row, AuditEvent event) {
+            Instant timestamp = event.getTimestamp();
+            int result = Long.compare(seconds[row], timestamp.getEpochSecond());
+            if (result == 0) {
+                result = Integer.compare(nanos[row], timestamp.getNano());
+            }
+            return result != 0 ? result : eventId(row).compareTo(event.getEventId());
+        }
+
+        /**
+         * Whether a row has the same timestamp as the event
+         */
+        boolean sameInstant(int row, AuditEvent event) {
+            return seconds[row] == event.getTimestamp().getEpochSecond()
+                    && nanos[row] == event.getTimestamp().getNano();
+        }
+
+        String eventId(int row) {
+            String id = otherIds[row];
+            return id != null ? id : new UUID(idHigh[row], idLow[row]).toString();
+        }
+
+        private String string(int column, int row) {
+            int code = codes[column][row];
+            if (code >= 0) {
+                return AuditStringDictionary.SHARED.value(code);
+            }
+            return code == NULL_CODE ? null : dictionary[-2 - code];
+        }
+
+        private String text(int row, int column) {
+            long ref = textRefs[row * TEXT_COLUMNS + column];
+            if (ref == NULL_TEXT) {
+                return null;
+            }
+            return new String(text, (int) (ref >>> 32), (int) ref, StandardCharsets.UTF_8);
+        }
+
+        private Block withRowCapacity(int capacity) {
+            int[][] grownCodes = new int[CODED_COLUMNS][];
+            for (int column = 0; column < CODED_COLUMNS; column++) {
+                grownCodes[column] = Arrays.copyOf(codes[column], capacity);
+            }
+            return new Block(Arrays.copyOf(seconds, capacity), Arrays.copyOf(nanos, capacity),
+                    Arrays.copyOf(epochDays, capacity), Arrays.copyOf(fileSizes, capacity), Arrays.copyOf(idHigh, capacity),
+                    Arrays.copyOf(idLow, capacity), Arrays.copyOf(otherIds, capacity), grownCodes,
+                    Arrays.copyOf(textRefs, capacity * TEXT_COLUMNS), text, dictionary);
+        }
+
+        private Block withTextCapacity(int capacity) {
+            return new Block(seconds, nanos, epochDays, fileSizes, idHigh, idLow, otherIds, codes, textRefs,
+                    Arrays.copyOf(text, capacity), dictionary);
+        }
+
+        private Block withDictionaryCapacity(int capacity) {
+            return new Block(seconds, nanos, epochDays, fileSizes, idHigh, idLow, otherIds, codes, textRefs,
+                    text, Arrays.copyOf(dictionary, capacity));
+        }
+    }
+}
@@ -0,0 +1,660 @@
+package com.lbg.markets.luxback.service;
+
+import com.lbg.markets.luxback.config.LuxBackConfig;
+import com.lbg.markets.luxback.exception.StorageException;
+import com.lbg.markets.luxback.model.AuditEvent;
+import com.lbg.markets.luxback.model.ObjectStat;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Storage layout for per-user audit logs.
+ * Each user has a base CSV file (with header) plus a directory of small,
+ * immutable, header-less segment files:
+ * <pre>
+ * audit-indexes/joe.bloggs.csv                            # compacted base log
+ * audit-indexes/joe.bloggs/0001731162600000-{uuid}.csv    # pending segments
+ * </pre>
+ * Recording an event only ever creates a new segment, so the cost of a write
+ * does not depend on how much history the user already has. Once enough
+ * segments accumulate they are concatenated onto the base file with a
+ * storage-side compose and then deleted.
+ * <p>
+ * A compact {@code stored_as -> filename} snapshot of each user's uploads is
+ * kept alongside, so the original name of a stored file can be resolved
+ * without reading the audit log:
+ * <pre>
+ * audit-indexes/_filenames/joe.bloggs.csv                 # upload filename snapshot
+ * </pre>
+ * It is extended whenever segments are compacted into the base file and is
+ * rebuilt from the full audit log if missing.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AuditLogStore {
+
+    static final String[] CSV_HEADERS = {
+            "event_id", "event_type", "timestamp", "username", "filename",
+            "stored_as", "file_size", "content_type", "ip_address",
+            "user_agent", "session_id", "actor_username"
+    };
+
+    // Base files carry a header row, segments are bare records so they can be concatenated.
+    // Only used for base files whose header differs from CSV_HEADERS; see AuditCsvDecoder
+    private static final CSVFormat BASE_FORMAT = CSVFormat.DEFAULT.withFirstRecordAsHeader();
+
+    private static final String FILENAME_INDEX_DIR = "_filenames";
+
+    // Internal directories beside the user logs (this one and AuditPartitionStore's "_partitions").
+    // A user whose name matches one, with any number of leading '_', is stored with one more
+    private static final Pattern RESERVED_NAME = Pattern.compile("_+(filenames|partitions)");
+
+    // GCS compose accepts at most 32 source objects, one of which is the base file
+    private static final int MAX_SEGMENTS_PER_COMPOSE = 31;
+
+    // Conditional composes onto a filename snapshot before giving up and removing it
+    private static final int MAX_SNAPSHOT_ATTEMPTS = 3;
+
+    private final StorageService storage;
+    private final LuxBackConfig config;
+
+    // Segments written per user since the last compaction
+    private final ConcurrentHashMap<String, AtomicInteger> pendingSegments = new ConcurrentHashMap<>();
+
+    /**
+     * Write audit events for a user as a new immutable segment.
+     * Callers must serialize appends for the same user.
+     */
+    public void append(String username, List<AuditEvent> events) {
+        String path = config.getAuditIndexPath() + "/" + storageName(username) + "/"
+                + String.format("%016d-%s.csv", Instant.now().toEpochMilli(), UUID.randomUUID());
+
+        try {
+            storage.writeString(path, formatSegment(events));
+        } catch (IOException e) {
+            throw new StorageException("Failed to write audit segment: " + path, e);
+        }
+
+        int pending = pendingSegments.computeIfAbsent(username, k -> new AtomicInteger()).incrementAndGet();
+        if (pending >= config.getAudit().getCompactionThreshold()) {
+            compact(username);
+        }
+    }
+
+    /**
+     * Storage state of a user's audit log: the base file's generation and size,
+     * plus the pending segments. Segments are immutable and uniquely named, so
+     * an equal version means the same events.
+     */
+    record LogVersion(long baseGeneration, long baseSize, List<String> segments) {
+
+        private static final long NO_BASE = -1L;
+
+        /**
+         * Whether the base file is the same as in an earlier version
+         */
+        boolean sameBaseAs(LogVersion earlier) {
+            return baseGeneration == earlier.baseGeneration && baseSize == earlier.baseSize;
+        }
+
+        /**
+         * Whether the base file may have been appended to since an earlier version.
+         * Compaction only ever appends to an existing base file, always growing it.
+         */
+        boolean baseGrewFrom(LogVersion earlier) {
+            return earlier.baseGeneration != NO_BASE && baseGeneration != NO_BASE && baseSize > earlier.baseSize;
+        }
+
+        /**
+         * Segments in this version that the earlier one did not have
+         */
+        List<String> segmentsSince(LogVersion earlier) {
+            Set<String> known = new HashSet<>(earlier.segments);
+            return segments.stream().filter(segment -> !known.contains(segment)).toList();
+        }
+    }
+
+    /**
+     * Events loaded from storage, with the version they were read from
+     */
+    record VersionedEvents(List<AuditEvent> events, LogVersion version) {
+    }
+
+    /**
+     * Load all audit events for a user, oldest first
+     */
+    public List<AuditEvent> load(String username) throws IOException {
+        return loadVersioned(username).events();
+    }
+
+    /**
+     * Load all audit events for a user, oldest first, with the version of the log they came from.
+     * The version is taken before reading, so a concurrent change can only make it look stale.
+     */
+    VersionedEvents loadVersioned(String username) throws IOException {
+        // List segments before reading the base file: a concurrent compaction can then
+        // only move events from a listed segment into the base, never lose them
+        List<String> segments = listSegments(username);
+        pendingSegments.putIfAbsent(username, new AtomicInteger(segments.size()));
+
+        Map<String, AuditEvent> events = new LinkedHashMap<>();
+
+        String basePath = basePath(username);
+        Optional<ObjectStat> base = storage.stat(basePath);
+        if (base.isPresent()) {
+            parse(basePath, true, events);
+        }
+
+        for (String segment : segments) {
+            try {
+                parse(segment, false, events);
+            } catch (StorageException e) {
+                log.debug("Audit segment compacted while loading: {}", segment);
+            }
+        }
+
+        List<AuditEvent> sorted = new ArrayList<>(events.values());
+        sorted.sort(Comparator.comparing(AuditEvent::getTimestamp));
+        return new VersionedEvents(sorted, version(base, segments));
+    }
+
+    /**
+     * Current version of a user's audit log, from metadata only (one listing and one stat)
+     */
+    LogVersion version(String username) {
+        List<String> segments = listSegments(username);
+        return version(storage.stat(basePath(username)), segments);
+    }
+
+    /**
+     * Read the events in the given segments, skipping any compacted away in the meantime
+     */
+    List<AuditEvent> loadSegments(List<String> segments) throws IOException {
+        Map<String, AuditEvent> events = new LinkedHashMap<>();
+        for (String segment : segments) {
+            try {
+                parse(segment, false, events);
+            } catch (StorageException e) {
+                log.debug("Audit segment compacted while loading: {}", segment);
+            }
+        }
+        return new ArrayList<>(events.values());
+    }
+
+    /**
+     * Read only the records appended to a user's base file since it was {@code fromSize}
+     * bytes long, with a ranged read of the new bytes
+     *
+     * @param toSize the current size of the base file
+     * @return the appended events, or empty if the file was not simply appended to
+     */
+    Optional<List<AuditEvent>> loadBaseTail(String username, long fromSize, long toSize) throws IOException {
+        // Start one byte early: an appended-to file still has the old last newline there
+        try (InputStream in = storage.readRange(basePath(username), fromSize - 1, toSize - fromSize + 1)) {
+            if (in.read() != '\n') {
+                return Optional.empty();
+            }
+            List<AuditEvent> events = new ArrayList<>();
+            try (AuditCsvDecoder decoder = new AuditCsvDecoder(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                for (AuditEvent event = decoder.next(); event != null; event = decoder.next()) {
+                    events.add(event);
+                }
+            } catch (IOException e) {
+                // Misaligned with the old contents, so it was rewritten rather than appended to
+                log.debug("Audit base file for user {} was not appended to: {}", username, e.getMessage());
+                return Optional.empty();
+            }
+            return Optional.of(events);
+        }
+    }
+
+    private static LogVersion version(Optional<ObjectStat> base, List<String> segments) {
+        return base.map(stat -> new LogVersion(stat.getGeneration(), stat.getSize(), segments))
+                .orElseGet(() -> new LogVersion(LogVersion.NO_BASE, 0, segments));
+    }
+
+    /**
+     * Format audit events as header-less CSV records, the on-storage segment format
+     */
+    String formatSegment(List<AuditEvent> events) throws IOException {
+        StringWriter sw = new StringWriter();
+        try (CSVPrinter printer = new CSVPrinter(sw, CSVFormat.DEFAULT)) {
+            for (AuditEvent event : events) {
+                printer.printRecord(toRecord(event));
+            }
+        }
+        return sw.toString();
+    }
+
+    /**
+     * Parse header-less CSV records in segment format.
+     * Stops at the first malformed record, e.g. a line torn by a crash mid-write.
+     * The reader is closed once parsed.
+     */
+    List<AuditEvent> parseSegment(Reader csv) {
+        List<AuditEvent> events = new ArrayList<>();
+        try (AuditCsvDecoder decoder = new AuditCsvDecoder(csv)) {
+            for (AuditEvent event = decoder.next(); event != null; event = decoder.next()) {
+                events.add(event);
+            }
+        } catch (IOException e) {
+            log.warn("Ignoring malformed audit records after {} valid events", events.size(), e);
+        }
+        return events;
+    }
+
+    /**
+     * Compose all pending segments for a user onto their base audit file.
+     * Failures are logged and retried on a later append - segments stay readable until composed.
+     * <p>
+     * Other instances may compact the same user concurrently. Every change to the base
+     * file is conditional on the generation it was last seen at, so a compaction that
+     * loses the race stops instead of overwriting the base. Segments can still be composed
+     * twice (they are deleted after the compose); load() drops the duplicate events.
+     */
+    public void compact(String username) {
+        String basePath = basePath(username);
+
+        try {
+            // Stat before listing: a compaction elsewhere in between then fails the generation check
+            Optional<ObjectStat> base = storage.stat(basePath);
+            List<String> segments = listSegments(username);
+
+            if (!segments.isEmpty() && base.isEmpty()) {
+                base = storage.writeStringIfAbsent(basePath, headerLine());
+                if (base.isEmpty()) {
+                    log.debug("Audit base file for user {} created by another instance, compacting later", username);
+                    return;
+                }
+            }
+
+            for (int i = 0; i < segments.size(); i += MAX_SEGMENTS_PER_COMPOSE) {
+                List<String> batch = segments.subList(i, Math.min(i + MAX_SEGMENTS_PER_COMPOSE, segments.size()));
+
+                Map<String, String> uploads = readUploads(batch);
+
+                List<String> sources = new ArrayList<>();
+                sources.add(basePath);
+                sources.addAll(batch);
+                base = storage.composeIfUnchanged(sources, basePath, base.get().getGeneration());
+                if (base.isEmpty()) {
+                    // Segments stay pending; the next compaction starts again from the newer base
+                    log.debug("Audit log for user {} compacted by another instance, compacting later", username);
+                    return;
+                }
+
+                // Snapshot must cover the batch before its segments disappear
+                appendToFilenameSnapshot(username, uploads);
+
+                // A crash before these deletes leaves duplicates, which load() drops by event ID
+                batch.forEach(storage::delete);
+            }
+
+            pendingSegments.computeIfAbsent(username, k -> new AtomicInteger()).set(0);
+            log.debug("Compacted {} audit segments for user: {}", segments.size(), username);
+
+        } catch (StorageException | IOException e) {
+            log.warn("Audit compaction failed for user: " + username, e);
+        }
+    }
+
+    /**
+     * Load a user's upload filenames ({@code stored_as -> filename}) from the
+     * snapshot plus any segments not yet compacted into it
+     *
+     * @return empty if the user has no snapshot yet
+     */
+    Optional<FilenameSnapshot> loadFilenameSnapshot(String username) throws IOException {
+        List<String> segments = listSegments(username);
+
+        String snapshotPath = filenameSnapshotPath(username);
+        Optional<ObjectStat> stat = storage.stat(snapshotPath);
+        if (stat.isEmpty()) {
+            return Optional.empty();
+        }
+
+        // Read after the stat: if the snapshot is extended in between, the next check sees a new generation
+        Map<String, String> filenames = new HashMap<>();
+        try (CSVParser parser = CSVParser.parse(storage.openReader(snapshotPath), CSVFormat.DEFAULT)) {
+            for (CSVRecord record : parser) {
+                filenames.putIfAbsent(record.get(0), record.get(1));
+            }
+        }
+        readUploads(segments).forEach(filenames::putIfAbsent);
+        return Optional.of(new FilenameSnapshot(filenames, stat.get().getGeneration(), segments));
+    }
+
+    /**
+     * Rebuild a user's upload filename snapshot from their full audit log
+     */
+    FilenameSnapshot rebuildFilenameSnapshot(String username) throws IOException {
+        // Segments first: one compacted in between is then read from the base file, never missed
+        List<String> segments = listSegments(username);
+        Map<String, String> filenames = uploadFilenames(load(username));
+        if (filenames.isEmpty()) {
+            return new FilenameSnapshot(filenames, FilenameSnapshot.NONE, segments);
+        }
+
+        long generation = FilenameSnapshot.NONE;
+        try {
+            // Never replace an existing snapshot: another instance may be extending it
+            Optional<ObjectStat> written = storage.writeStringIfAbsent(filenameSnapshotPath(username), formatFilenames(filenames));
+            if (written.isPresent()) {
+                generation = written.get().getGeneration();
+                log.debug("Rebuilt filename snapshot with {} entries for user: {}", filenames.size(), username);
+            }
+        } catch (StorageException | IOException e) {
+            log.warn("Failed to write filename snapshot for user: " + username, e);
+        }
+        return new FilenameSnapshot(filenames, generation, segments);
+    }
+
+    /**
+     * Generation of a user's filename snapshot, or {@link FilenameSnapshot#NONE} if there is none
+     */
+    long filenameSnapshotGeneration(String username) {
+        return storage.stat(filenameSnapshotPath(username))
+                .map(ObjectStat::getGeneration)
+                .orElse(FilenameSnapshot.NONE);
+    }
+
+    /**
+     * Upload filenames recorded in the given segments
+     */
+    Map<String, String> readUploads(List<String> segments) {
+        List<AuditEvent> events = new ArrayList<>();
+        for (String segment : segments) {
+            try {
+                events.addAll(parseSegment(storage.openReader(segment)));
+            } catch (StorageException e) {
+                log.debug("Audit segment compacted while reading uploads: {}", segment);
+            }
+        }
+        return uploadFilenames(events);
+    }
+
+    /**
+     * A user's upload filenames, with the snapshot generation and the pending
+     * segments they were read from
+     */
+    record FilenameSnapshot(Map<String, String> filenames, long generation, List<String> segments) {
+
+        static final long NONE = -1L;
+
+        /**
+         * Whether storage still holds everything this was read from: the same snapshot and
+         * every segment, so anything new is in the segments that have appeared since
+         */
+        boolean coveredBy(long currentGeneration, List<String> currentSegments) {
+            return generation == currentGeneration && currentSegments.containsAll(segments);
+        }
+    }
+
+    /**
+     * Map the stored name of each uploaded file to its original name; the first upload wins
+     */
+    static Map<String, String> uploadFilenames(List<AuditEvent> events) {
+        Map<String, String> filenames = new HashMap<>();
+        for (AuditEvent event : events) {
+            if ("UPLOAD".equals(event.getEventType()) && event.getStoredAs() != null) {
+                filenames.putIfAbsent(event.getStoredAs(), event.getFilename());
+            }
+        }
+        return filenames;
+    }
+
+    /**
+     * Get all usernames that have an audit base file or a segment directory.
+     * Lists only the top level of the audit root, never the segments, partitions
+     * or snapshots beneath it.
+     */
+    public List<String> listUsernames() {
+        String root = normalize(config.getAuditIndexPath());
+
+        return storage.listDirectory(config.getAuditIndexPath()).stream()
+                .map(path -> usernameOf(root, path.replace('\\', '/')))
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+    }
+
+    /**
+     * Extract the username from an entry of the audit root:
+     * {@code root/{user}.csv} for base files, {@code root/{user}/} for segment directories
+     *
+     * @return the username, or null for internal directories and anything else
+     */
+    private String usernameOf(String root, String path) {
+        if (!path.startsWith(root + "/")) {
+            return null;
+        }
+
+        String name = path.substring(root.length() + 1);
+        if (name.endsWith("/")) {
+            name = name.substring(0, name.length() - 1);
+        } else if (name.endsWith(".csv")) {
+            name = name.substring(0, name.length() - ".csv".length());
+        } else {
+            return null;
+        }
+
+        if (name.isEmpty() || FILENAME_INDEX_DIR.equals(name) || AuditPartitionStore.PARTITION_DIR.equals(name)) {
+            return null;
+        }
+        return RESERVED_NAME.matcher(name).matches() ? name.substring(1) : name;
+    }
+
+    /**
+     * Name of a user's base file and segment directory in the audit root, which
+     * differs from the username only for names an internal directory could clash with
+     */
+    private static String storageName(String username) {
+        return RESERVED_NAME.matcher(username).matches() ? "_" + username : username;
+    }
+
+    /**
+     * A user's uncompacted segments, oldest first
+     */
+    List<String> listSegments(String username) {
+        // Trailing slash: on GCS a bare "joe" prefix would also list "joe.bloggs/..."
+        String directory = config.getAuditIndexPath() + "/" + storageName(username) + "/";
+        String prefix = normalize(directory) + "/";
+
+        return storage.listFiles(directory).stream()
+                .filter(path -> normalize(path).startsWith(prefix) && path.endsWith(".csv"))
+                .sorted() // Segment names start with a fixed-width timestamp
+                .toList();
+    }
+
+    /**
+     * Extend an existing filename snapshot with newly compacted uploads.
+     * Each compose is conditional on the snapshot's generation and retried if another
+     * instance changed it first. If that keeps failing the snapshot is removed so the
+     * next lookup rebuilds it.
+     */
+    private void appendToFilenameSnapshot(String username, Map<String, String> uploads) {
+        String snapshotPath = filenameSnapshotPath(username);
+        Optional<ObjectStat> snapshot = uploads.isEmpty() ? Optional.empty() : storage.stat(snapshotPath);
+        if (snapshot.isEmpty()) {
+            return; // Nothing to add, or built from the full log on first lookup
+        }
+
+        String deltaPath = config.getAuditIndexPath() + "/" + FILENAME_INDEX_DIR + "/"
+                + username + "." + UUID.randomUUID() + ".tmp";
+        try {
+            storage.writeString(deltaPath, formatFilenames(uploads));
+            for (int attempt = 1; ; attempt++) {
+                List<String> sources = List.of(snapshotPath, deltaPath);
+                if (storage.composeIfUnchanged(sources, snapshotPath, snapshot.get().getGeneration()).isPresent()) {
+                    return;
+                }
+
+                snapshot = storage.stat(snapshotPath);
+                if (snapshot.isEmpty()) {
+                    return; // Removed elsewhere; a rebuild reads the uploads from the base file
+                }
+                if (attempt == MAX_SNAPSHOT_ATTEMPTS) {
+                    log.warn("Filename snapshot for user {} kept changing, discarding it", username);
+                    storage.delete(snapshotPath);
+                    return;
+                }
+            }
+        } catch (StorageException | IOException e) {
+            log.warn("Failed to extend filename snapshot for user: " + username + ", discarding it", e);
+            storage.delete(snapshotPath);
+        } finally {
+            storage.delete(deltaPath);
+        }
+    }
+
+    private String formatFilenames(Map<String, String> filenames) throws IOException {
+        StringWriter sw = new StringWriter();
+        try (CSVPrinter printer = new CSVPrinter(sw, CSVFormat.DEFAULT)) {
+            for (Map.Entry<String, String> entry : filenames.entrySet()) {
+                printer.printRecord(entry.getKey(), entry.getValue());
+            }
+        }
+        return sw.toString();
+    }
+
+    private String filenameSnapshotPath(String username) {
+        return config.getAuditIndexPath() + "/" + FILENAME_INDEX_DIR + "/" + username + ".csv";
+    }
+
+    private String basePath(String username) {
+        return config.getAuditIndexPath() + "/" + storageName(username) + ".csv";
+    }
+
+    private String normalize(String path) {
+        String normalized = path.replace('\\', '/');
+        return normalized.endsWith("/") ? normalized.substring(0, normalized.length() - 1) : normalized;
+    }
+
+    private String headerLine() throws IOException {
+        StringWriter sw = new StringWriter();
+        try (CSVPrinter printer = new CSVPrinter(sw, CSVFormat.DEFAULT)) {
+            printer.printRecord((Object[]) CSV_HEADERS);
+        }
+        return sw.toString();
+    }
+
+    /**
+     * Stream records from a stored CSV file straight into the event map
+     *
+     * @param header whether the file starts with a header row (base files)
+     */
+    private void parse(String path, boolean header, Map<String, AuditEvent> events) throws IOException {
+        try (AuditCsvDecoder decoder = new AuditCsvDecoder(storage.openReader(path))) {
+            if (header && !decoder.readHeader()) {
+                // Not the standard column layout (e.g. an older file) - map columns by header name
+                readByHeader(storage.openReader(path))
+                        .forEach(event -> events.putIfAbsent(event.getEventId(), event));
+                return;
+            }
+            for (AuditEvent event = decoder.next(); event != null; event = decoder.next()) {
+                events.putIfAbsent(event.getEventId(), event);
+            }
+        }
+    }
+
+    /**
+     * Parse CSV with a header row, mapping columns by name and tolerating missing optional columns.
+     * The reader is closed once parsed.
+     */
+    static List<AuditEvent> readByHeader(Reader csv) throws IOException {
+        List<AuditEvent> events = new ArrayList<>();
+        try (CSVParser parser = CSVParser.parse(csv, BASE_FORMAT)) {
+            for (CSVRecord record : parser) {
+                events.add(recordToAuditEvent(record));
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed audit record", e);
+        }
+        return events;
+    }
+
+    /**
+     * Convert AuditEvent to CSV record values, in CSV_HEADERS order
+     */
+    private Object[] toRecord(AuditEvent event) {
+        return new Object[]{
+                event.getEventId(),
+                event.getEventType(),
+                event.getTimestamp(),
+                event.getUsername(),
+                event.getFilename(),
+                event.getStoredAs(),
+                event.getFileSize(),
+                event.getContentType(),
+                event.getIpAddress(),
+                event.getUserAgent(),
+                event.getSessionId(),
+                event.getActorUsername()
+        };
+    }
+
+    /**
+     * Convert CSV record to AuditEvent object
+     */
+    private static AuditEvent recordToAuditEvent(CSVRecord record) {
+        return AuditEvent.builder()
+                .eventId(record.get("event_id"))
+                .eventType(record.get("event_type"))
+                .timestamp(Instant.parse(record.get("timestamp")))
+                .username(record.get("username"))
+                .filename(record.get("filename"))
+                .storedAs(record.get("stored_as"))
+                .fileSize(parseOptionalLong(record, "file_size"))
+                .contentType(getOptional(record, "content_type"))
+                .ipAddress(record.get("ip_address"))
+                .userAgent(getOptional(record, "user_agent"))
+                .sessionId(getOptional(record, "session_id"))
+                .actorUsername(record.get("actor_username"))
+                .build();
+    }
+
+    /**
+     * Get optional string value from CSV record
+     */
+    private static String getOptional(CSVRecord record, String column) {
+        try {
+            String value = record.isMapped(column) ? record.get(column) : null;
+            return (value == null || value.isBlank()) ? null : value;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parse optional long value from CSV record
+     */
+    private static Long parseOptionalLong(CSVRecord record, String column) {
+        String value = getOptional(record, column);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
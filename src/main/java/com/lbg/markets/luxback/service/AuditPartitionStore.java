@@ -0,0 +1,368 @@
+package com.lbg.markets.luxback.service;
+
+import com.lbg.markets.luxback.config.LuxBackConfig;
+import com.lbg.markets.luxback.exception.StorageException;
+import com.lbg.markets.luxback.model.AuditEvent;
+import com.lbg.markets.luxback.model.SearchCriteria;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Time-partitioned, columnar copy of the audit log for date-bounded searches.
+ * Events are grouped into monthly partitions of immutable chunks, each named
+ * after the range of timestamps it holds:
+ * <pre>
+ * audit-indexes/_partitions/2024-11/{minMillis}-{maxMillis}-{uuid}.col
+ * audit-indexes/_partitions/_ready     # present once backfilled from the per-user logs
+ * </pre>
+ * A search prunes chunks from the listing alone, then decodes only the
+ * timestamp column (plus event type/username/filename when filtered on) before
+ * materializing matching rows. See {@link ColumnarAuditChunk}.
+ * <p>
+ * The per-user CSV logs remain the source of truth. If the ready marker is
+ * missing at startup the store is backfilled from them in the background, and
+ * searches use the per-user logs until it finishes. A chunk whose write fails
+ * is retried on later flushes; until it is written searches again use the
+ * per-user logs, and the marker is removed. Every instance re-checks the
+ * marker at most once per revalidate interval, and one that finds it gone
+ * uses the per-user logs and backfills again, so a chunk another instance
+ * failed to write is never silently missing from its results.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AuditPartitionStore {
+
+    static final String PARTITION_DIR = "_partitions";
+    private static final String READY_MARKER = "_ready";
+    private static final String CHUNK_SUFFIX = ".col";
+
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyy-MM").withZone(ZoneOffset.UTC);
+
+    private final StorageService storage;
+    private final LuxBackConfig config;
+    private final AuditLogStore auditLog;
+
+    // Chunks written per partition since it was last merged
+    private final ConcurrentHashMap<String, AtomicInteger> chunkCounts = new ConcurrentHashMap<>();
+
+    // Chunks whose write failed, each one month's events, retried on later appends
+    private final Queue<List<AuditEvent>> failedChunks = new ConcurrentLinkedQueue<>();
+
+    // False until the ready marker has been found or the backfill has finished
+    private volatile boolean backfilled;
+
+    // When the ready marker was last seen (System.currentTimeMillis)
+    private volatile long markerSeenAt;
+
+    private final AtomicBoolean backfilling = new AtomicBoolean();
+
+    /**
+     * Check for the ready marker once the application has started, backfilling
+     * from the per-user audit logs in the background if it is missing
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (config.getAudit().isPartitionedSearch()) {
+            startBackfill();
+        }
+    }
+
+    /**
+     * Add written audit events to their monthly partitions, one chunk per partition.
+     * Chunks that fail to write are kept and retried first on the next call.
+     */
+    public synchronized void append(List<AuditEvent> events) {
+        retryFailedChunks();
+
+        Map<String, List<AuditEvent>> byMonth = events.stream()
+                .collect(Collectors.groupingBy(event -> MONTH.format(event.getTimestamp()),
+                        TreeMap::new, Collectors.toList()));
+        byMonth.forEach(this::appendChunk);
+    }
+
+    /**
+     * Write chunks that failed earlier, so searches can use the partitions again
+     */
+    public synchronized void retryFailedChunks() {
+        for (int pending = failedChunks.size(); pending > 0; pending--) {
+            List<AuditEvent> events = failedChunks.poll();
+            if (events == null) {
+                break;
+            }
+            appendChunk(MONTH.format(events.get(0).getTimestamp()), events);
+        }
+    }
+
+    /**
+     * Whether searches can be served from this store: it has been backfilled, no
+     * chunk is waiting to be retried, and the ready marker is still there (checked
+     * at most once per revalidate interval). A missing marker starts a new backfill.
+     */
+    public boolean isReady() {
+        if (!backfilled || !failedChunks.isEmpty()) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (now - markerSeenAt < config.getAudit().getRevalidateInterval().toMillis()) {
+            return true;
+        }
+
+        try {
+            if (storage.exists(markerPath())) {
+                markerSeenAt = now;
+                return true;
+            }
+        } catch (StorageException e) {
+            log.warn("Could not check audit partition ready marker, searches will use the per-user logs", e);
+            return false;
+        }
+
+        log.warn("Audit partition ready marker is gone, a chunk failed to write; backfilling again");
+        backfilled = false;
+        startBackfill();
+        return false;
+    }
+
+    /**
+     * Mark the store ready if the ready marker exists, otherwise backfill, on a background thread
+     */
+    private void startBackfill() {
+        if (!backfilling.compareAndSet(false, true)) {
+            return;
+        }
+        Thread.ofVirtual().name("audit-partition-backfill").start(() -> {
+            try {
+                if (!backfilled && storage.exists(markerPath())) {
+                    markerSeenAt = System.currentTimeMillis();
+                    backfilled = true;
+                } else {
+                    backfill();
+                }
+            } catch (RuntimeException e) {
+                log.warn("Audit partition backfill failed, searches will use the per-user logs", e);
+            } finally {
+                backfilling.set(false);
+            }
+        });
+    }
+
+    /**
+     * Copy every per-user audit log into the partitions, one user at a time, then
+     * write the ready marker. Existing chunks are kept: searches and merges drop
+     * duplicate event IDs.
+     */
+    void backfill() {
+        log.info("Backfilling audit partitions from per-user audit logs");
+        int users = 0;
+        for (String username : auditLog.listUsernames()) {
+            try {
+                List<AuditEvent> events = auditLog.load(username);
+                if (!events.isEmpty()) {
+                    append(events);
+                }
+                users++;
+            } catch (IOException | StorageException e) {
+                log.warn("Failed to backfill audit partitions for user: " + username + ", not marking them ready", e);
+                return;
+            }
+        }
+
+        if (!failedChunks.isEmpty()) {
+            log.warn("Audit partition backfill left {} chunks to retry, not writing the ready marker", failedChunks.size());
+        } else {
+            storage.writeString(markerPath(), Instant.now().toString());
+            markerSeenAt = System.currentTimeMillis();
+        }
+        backfilled = true;
+        log.info("Backfilled audit partitions for {} users", users);
+    }
+
+    /**
+     * Find events in the criteria's date range, pre-filtered on event type, username and filename.
+     * Callers apply the full criteria to the results and drop duplicate event IDs.
+     */
+    public List<AuditEvent> search(SearchCriteria criteria) throws IOException {
+        ZoneId zone = ZoneId.systemDefault();
+        Instant from = criteria.getStartDate() == null ? null
+                : criteria.getStartDate().atStartOfDay(zone).toInstant();
+        Instant until = criteria.getEndDate() == null ? null
+                : criteria.getEndDate().plusDays(1).atStartOfDay(zone).toInstant();
+
+        long fromMillis = from == null ? Long.MIN_VALUE : from.toEpochMilli();
+        long untilMillis = until == null ? Long.MAX_VALUE : until.toEpochMilli();
+
+        List<AuditEvent> results = new ArrayList<>();
+        int scanned = 0;
+        for (String path : storage.listFiles(partitionRoot())) {
+            long[] range = chunkRange(path);
+            if (range == null || range[1] < fromMillis || range[0] >= untilMillis) {
+                continue; // Pruned on name alone
+            }
+            scanned++;
+            results.addAll(scan(path, from, until, criteria));
+        }
+
+        log.debug("Partition search scanned {} chunks, {} candidate events", scanned, results.size());
+        return results;
+    }
+
+    private List<AuditEvent> scan(String path, Instant from, Instant until, SearchCriteria criteria) throws IOException {
+        ColumnarAuditChunk chunk = ColumnarAuditChunk.read(readChunk(path));
+
+        BitSet rows = new BitSet(chunk.rowCount());
+        Instant[] timestamps = chunk.timestamps();
+        for (int row = 0; row < timestamps.length; row++) {
+            if ((from == null || !timestamps[row].isBefore(from))
+                    && (until == null || timestamps[row].isBefore(until))) {
+                rows.set(row);
+            }
+        }
+
+        if (!rows.isEmpty() && criteria.getEventType() != null) {
+            chunk.retainEqual(ColumnarAuditChunk.EVENT_TYPE, criteria.getEventType(), rows);
+        }
+
+        if (!rows.isEmpty() && criteria.getUsername() != null) {
+            chunk.retainEqual(ColumnarAuditChunk.USERNAME, criteria.getUsername(), rows);
+        }
+
+        if (!rows.isEmpty() && criteria.getFilename() != null) {
+            String needle = criteria.getFilename().toLowerCase(Locale.ROOT);
+            String[] filenames = chunk.strings(ColumnarAuditChunk.FILENAME);
+            for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+                if (filenames[row] == null || !filenames[row].toLowerCase(Locale.ROOT).contains(needle)) {
+                    rows.clear(row);
+                }
+            }
+        }
+
+        return rows.isEmpty() ? List.of() : chunk.events(rows);
+    }
+
+    /**
+     * Write one month's events as a chunk, merging the partition once it has enough chunks
+     */
+    private void appendChunk(String month, List<AuditEvent> events) {
+        try {
+            AtomicInteger count = chunkCounts.computeIfAbsent(month, m -> new AtomicInteger(listChunks(m).size()));
+            writeChunk(month, events);
+            if (count.incrementAndGet() >= config.getAudit().getCompactionThreshold()) {
+                mergePartition(month);
+            }
+        } catch (StorageException e) {
+            log.error("Failed to write audit partition chunk for " + month + ", will retry", e);
+            failedChunks.add(events);
+            dropMarker();
+        }
+    }
+
+    /**
+     * Remove the ready marker, so a restart before a failed chunk is retried backfills instead
+     */
+    private void dropMarker() {
+        try {
+            storage.delete(markerPath());
+        } catch (StorageException e) {
+            log.warn("Failed to remove audit partition ready marker", e);
+        }
+    }
+
+    /**
+     * Merge a partition's chunks into one so searches open fewer objects
+     */
+    private void mergePartition(String month) {
+        List<String> chunks = listChunks(month);
+        try {
+            Map<String, AuditEvent> events = new LinkedHashMap<>();
+            for (String path : chunks) {
+                ColumnarAuditChunk chunk = ColumnarAuditChunk.read(readChunk(path));
+                BitSet all = new BitSet(chunk.rowCount());
+                all.set(0, chunk.rowCount());
+                chunk.events(all).forEach(event -> events.putIfAbsent(event.getEventId(), event));
+            }
+
+            writeChunk(month, new ArrayList<>(events.values()));
+            // A crash before these deletes leaves duplicates, which searches drop by event ID
+            chunks.forEach(storage::delete);
+
+            chunkCounts.computeIfAbsent(month, m -> new AtomicInteger()).set(1);
+            log.debug("Merged {} audit chunks in partition: {}", chunks.size(), month);
+
+        } catch (StorageException | IOException e) {
+            log.warn("Audit partition merge failed: " + month, e);
+        }
+    }
+
+    private void writeChunk(String month, List<AuditEvent> events) {
+        List<AuditEvent> sorted = new ArrayList<>(events);
+        sorted.sort(Comparator.comparing(AuditEvent::getTimestamp));
+
+        long min = sorted.get(0).getTimestamp().toEpochMilli();
+        long max = sorted.get(sorted.size() - 1).getTimestamp().toEpochMilli();
+        String path = partitionRoot() + "/" + month + "/"
+                + String.format("%016d-%016d-%s%s", min, max, UUID.randomUUID(), CHUNK_SUFFIX);
+
+        try {
+            byte[] bytes = ColumnarAuditChunk.encode(sorted);
+            storage.writeFile(path, new ByteArrayInputStream(bytes), bytes.length);
+        } catch (IOException e) {
+            throw new StorageException("Failed to write audit chunk: " + path, e);
+        }
+    }
+
+    private byte[] readChunk(String path) throws IOException {
+        try (InputStream in = storage.readFile(path)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private List<String> listChunks(String month) {
+        return storage.listFiles(partitionRoot() + "/" + month).stream()
+                .filter(path -> path.endsWith(CHUNK_SUFFIX))
+                .toList();
+    }
+
+    /**
+     * Parse [minMillis, maxMillis] from a chunk's file name
+     *
+     * @return null if the path is not a chunk
+     */
+    private long[] chunkRange(String path) {
+        String name = path.substring(path.replace('\\', '/').lastIndexOf('/') + 1);
+        if (!name.endsWith(CHUNK_SUFFIX)) {
+            return null;
+        }
+        String[] parts = name.split("-", 3);
+        try {
+            return new long[]{Long.parseLong(parts[0]), Long.parseLong(parts[1])};
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    private String partitionRoot() {
+        return config.getAuditIndexPath() + "/" + PARTITION_DIR;
+    }
+
+    private String markerPath() {
+        return partitionRoot() + "/" + READY_MARKER;
+    }
+}
@@ -1,85 +1,123 @@
 package com.lbg.markets.luxback.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.lbg.markets.luxback.config.LuxBackConfig;
+import com.lbg.markets.luxback.exception.StorageException;
+import com.lbg.markets.luxback.model.AuditCursor;
 import com.lbg.markets.luxback.model.AuditEvent;
+import com.lbg.markets.luxback.model.AuditPage;
 import com.lbg.markets.luxback.model.FileMetadata;
 import com.lbg.markets.luxback.model.SearchCriteria;
+import com.lbg.markets.luxback.service.UserAuditLog.EventRows;
+import jakarta.annotation.PreDestroy;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import jakarta.servlet.http.HttpServletRequest;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVPrinter;
-import org.apache.commons.csv.CSVRecord;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
-import java.io.StringWriter;
 import java.time.Instant;
-import java.time.LocalDate;
-import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
+import java.util.function.IntPredicate;
 import java.util.stream.Collectors;
 
 /**
  * Service for managing audit logs using CSV files.
  * Features:
  * - Per-user CSV files for natural partitioning
- * - Per-user caching for performance
- * - Per-user locking to prevent write conflicts
- * - Append-only operations
+ * - Per-user caching for performance, bounded by estimated heap size and revalidated
+ *   against storage metadata so writes from other instances are picked up
+ * - Write-behind batching so request threads never wait on storage (see {@link AuditWriteQueue})
+ * - Append-only operations via immutable segments (see {@link AuditLogStore})
+ * - Date-bounded searches served from time-partitioned columnar storage (see {@link AuditPartitionStore})
+ * - Stored-to-original filename lookups without reading the audit log (see {@link FilenameIndex})
+ * - Cross-user searches load and filter each user's events in parallel
+ * - Optional parallel cache warm-up at startup (see {@link AuditCacheWarmer})
  */
 @Service
-@RequiredArgsConstructor
 @Slf4j
-public class AuditService {
+public class AuditService implements MeterBinder {
 
-    private static final String[] CSV_HEADERS = {
-            "event_id", "event_type", "timestamp", "username", "filename",
-            "stored_as", "file_size", "content_type", "ip_address",
-            "user_agent", "session_id", "actor_username"
-    };
-
-    private final StorageService storage;
+    private final AuditLogStore auditLog;
+    private final AuditWriteQueue writeQueue;
+    private final FilenameIndex filenameIndex;
+    private final AuditPartitionStore partitions;
     private final LuxBackConfig config;
 
-    // Per-user locks to prevent concurrent writes to same user's CSV
-    private final ConcurrentHashMap<String, ReentrantLock> userLocks = new ConcurrentHashMap<>();
+    private static final Comparator<AuditEvent> NEWEST_FIRST = UserAuditLog.ORDER.reversed();
+
+    // Per-user cache of audit events, appended to in place as events are recorded.
+    // Weighed by estimated heap size; least valuable users are evicted past cacheMaxSize
+    private final Cache<String, UserAuditLog> perUserCache;
+
+    // Loads of users not yet cached, shared by concurrent searches
+    private final ConcurrentHashMap<String, CompletableFuture<UserAuditLog>> loading = new ConcurrentHashMap<>();
+
+    // Per-user loads and filtering for cross-user searches
+    private final ExecutorService searchExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public AuditService(AuditLogStore auditLog, AuditWriteQueue writeQueue, FilenameIndex filenameIndex,
+                        AuditPartitionStore partitions, LuxBackConfig config) {
+        this.auditLog = auditLog;
+        this.writeQueue = writeQueue;
+        this.filenameIndex = filenameIndex;
+        this.partitions = partitions;
+        this.config = config;
+        this.perUserCache = Caffeine.newBuilder()
+                .maximumWeight(config.getAudit().getCacheMaxSize().toBytes())
+                .weigher((String username, UserAuditLog userLog) -> (int) Math.min(Integer.MAX_VALUE, userLog.estimatedBytes()))
+                .executor(Runnable::run) // Evict on the calling thread, so the bound holds as soon as a load completes
+                .recordStats()
+                .build();
+    }
 
-    // Per-user cache of audit events
-    private final ConcurrentHashMap<String, List<AuditEvent>> perUserCache = new ConcurrentHashMap<>();
+    /**
+     * Publish hit, miss, eviction and size metrics for the per-user cache (cache.* with cache=audit.users)
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, perUserCache, "audit.users");
+    }
 
     /**
      * Record a file upload event
      */
     public void recordUpload(String username, FileMetadata metadata, HttpServletRequest request) {
-        ReentrantLock lock = userLocks.computeIfAbsent(username, k -> new ReentrantLock());
-        lock.lock();
-        try {
-            appendAuditEvent(username,
-                    UUID.randomUUID().toString(),
-                    "UPLOAD",
-                    Instant.now(),
-                    username,
-                    metadata.getOriginalFilename(),
-                    metadata.getStoredFilename(),
-                    metadata.getSize(),
-                    metadata.getContentType(),
-                    getClientIp(request),
-                    request.getHeader("User-Agent"),
-                    request.getSession().getId(),
-                    username // actor is uploader
-            );
-
-            // Invalidate cache for this user
-            perUserCache.remove(username);
-
-            log.info("Recorded upload: user={}, file={}", username, metadata.getOriginalFilename());
-        } finally {
-            lock.unlock();
-        }
+        AuditEvent event = AuditEvent.builder()
+                .eventId(UUID.randomUUID().toString())
+                .eventType("UPLOAD")
+                .timestamp(Instant.now())
+                .username(username)
+                .filename(metadata.getOriginalFilename())
+                .storedAs(metadata.getStoredFilename())
+                .fileSize(metadata.getSize())
+                .contentType(shared(metadata.getContentType()))
+                .ipAddress(getClientIp(request))
+                .userAgent(request.getHeader("User-Agent"))
+                .sessionId(request.getSession().getId())
+                .actorUsername(username) // actor is uploader
+                .build();
+
+        appendAuditEvent(username, event);
+        updateCache(username, event);
+        filenameIndex.record(event);
+
+        log.info("Recorded upload: user={}, file={}", username, metadata.getOriginalFilename());
     }
 
     /**
@@ -87,171 +125,551 @@ public class AuditService {
      */
     public void recordDownload(String fileOwner, String originalFilename, String storedFilename,
                                String downloaderUsername, HttpServletRequest request) {
-        ReentrantLock lock = userLocks.computeIfAbsent(fileOwner, k -> new ReentrantLock());
-        lock.lock();
-        try {
-            appendAuditEvent(fileOwner,
-                    UUID.randomUUID().toString(),
-                    "DOWNLOAD",
-                    Instant.now(),
-                    fileOwner,
-                    originalFilename,
-                    storedFilename,
-                    null, // file_size not needed for download
-                    null, // content_type not needed for download
-                    getClientIp(request),
-                    request.getHeader("User-Agent"),
-                    request.getSession().getId(),
-                    downloaderUsername // actor is downloader
-            );
-
-            // Invalidate cache for file owner
-            perUserCache.remove(fileOwner);
-
-            log.info("Recorded download: owner={}, downloader={}, file={}",
-                    fileOwner, downloaderUsername, originalFilename);
-        } finally {
-            lock.unlock();
-        }
+        AuditEvent event = AuditEvent.builder()
+                .eventId(UUID.randomUUID().toString())
+                .eventType("DOWNLOAD")
+                .timestamp(Instant.now())
+                .username(fileOwner)
+                .filename(originalFilename)
+                .storedAs(storedFilename)
+                // file_size and content_type not needed for download
+                .ipAddress(getClientIp(request))
+                .userAgent(request.getHeader("User-Agent"))
+                .sessionId(request.getSession().getId())
+                .actorUsername(downloaderUsername) // actor is downloader
+                .build();
+
+        appendAuditEvent(fileOwner, event);
+        updateCache(fileOwner, event);
+
+        log.info("Recorded download: owner={}, downloader={}, file={}",
+                fileOwner, downloaderUsername, originalFilename);
     }
 
     /**
      * Search all audit events across all users
      */
     public List<AuditEvent> searchAllAudit(SearchCriteria criteria) {
-        List<AuditEvent> allEvents = getAllUsernames().stream()
-                .flatMap(username -> getUserEvents(username).stream())
+        if (isDateBounded(criteria) && config.getAudit().isPartitionedSearch() && partitions.isReady()) {
+            try {
+                return searchPartitions(criteria);
+            } catch (IOException | StorageException e) {
+                log.warn("Partitioned audit search failed, falling back to per-user logs", e);
+            }
+        }
+
+        List<List<AuditEvent>> perUser = fanOut(getAllUsernames(), (username, userLog) -> {
+            EventRows rows = candidateRows(userLog, criteria);
+            List<AuditEvent> matches = new ArrayList<>();
+            for (int index = 0; index < rows.size(); index++) {
+                if (matchesCriteria(rows, index, criteria)) {
+                    matches.add(rows.event(index));
+                }
+            }
+            return matches;
+        });
+
+        return perUser.stream()
+                .flatMap(List::stream)
+                .sorted(NEWEST_FIRST)
                 .collect(Collectors.toList());
+    }
+
+    /**
+     * Get one page of matching audit events, newest first, by offset
+     */
+    public AuditPage searchPage(SearchCriteria criteria, int offset, int limit) {
+        return page(criteria, null, offset, limit, true);
+    }
+
+    /**
+     * Get the page of matching audit events following a cursor, newest first.
+     * Resumes from the cursor's position without revisiting earlier pages.
+     *
+     * @param countTotal whether to count every match; callers paging forward can reuse an earlier count
+     */
+    public AuditPage searchAfter(SearchCriteria criteria, AuditCursor cursor, int limit, boolean countTotal) {
+        return page(criteria, cursor, 0, limit, countTotal);
+    }
 
-        return allEvents.stream()
+    /**
+     * Each user's cached events are already time-ordered, so they are merged
+     * through a heap keyed on each user's next match: only events up to the
+     * end of the requested page are ever ordered. A cursor positions each
+     * user's stream by binary search, and a date range narrows it by binary
+     * search on the epoch day column. Filtering and ordering read the cached
+     * columns, so only the events on the returned page are materialized.
+     * Pages never go to the partition store, whose chunks would have to be
+     * listed, fetched and decoded again for every page.
+     */
+    private AuditPage page(SearchCriteria criteria, AuditCursor after, int offset, int limit, boolean countTotal) {
+        AuditEvent position = after == null ? null
+                : AuditEvent.builder().timestamp(after.getTimestamp()).eventId(after.getEventId()).build();
+        Long carriedTotal = after == null ? null : after.getTotal();
+
+        List<String> usernames = (criteria != null && criteria.getUsername() != null)
+                ? List.of(criteria.getUsername())
+                : getAllUsernames();
+
+        // Position each user's cursor (and count their matches) in parallel
+        List<UserCursor> cursors = fanOut(usernames, (username, userLog) -> {
+            EventRows rows = candidateRows(userLog, criteria);
+            IntPredicate matches = index -> matchesCriteria(rows, index, criteria);
+            UserCursor cursor = new UserCursor(rows, startIndex(rows, position), matches);
+            if (countTotal) {
+                for (int index = 0; index < rows.size(); index++) {
+                    if (matches.test(index)) {
+                        cursor.matchCount++;
+                    }
+                }
+            }
+            return cursor;
+        });
+
+        PriorityQueue<UserCursor> heap = new PriorityQueue<>(Math.max(1, usernames.size()),
+                (a, b) -> EventRows.compare(b.rows, b.index, a.rows, a.index));
+        long total = 0;
+        for (UserCursor cursor : cursors) {
+            total += cursor.matchCount;
+            if (cursor.advance()) {
+                heap.add(cursor);
+            }
+        }
+
+        List<AuditEvent> page = new ArrayList<>(limit);
+        int skipped = 0;
+        while (!heap.isEmpty() && page.size() < limit) {
+            UserCursor cursor = heap.poll();
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                page.add(cursor.current());
+            }
+            if (cursor.advance()) {
+                heap.add(cursor);
+            }
+        }
+
+        // Later pages reuse this page's count, or the one carried in from the first page
+        Long cursorTotal = countTotal ? Long.valueOf(total) : carriedTotal;
+        return AuditPage.builder()
+                .events(page)
+                .totalResults(countTotal ? total : null)
+                .nextCursor(!heap.isEmpty() && !page.isEmpty()
+                        ? AuditCursor.after(page.get(page.size() - 1), cursorTotal).encode() : null)
+                .build();
+    }
+
+    /**
+     * Index in oldest-first rows at which a newest-first walk resumes after the position
+     */
+    private static int startIndex(EventRows rows, AuditEvent position) {
+        if (position == null) {
+            return rows.size();
+        }
+        int low = 0;
+        int high = rows.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (rows.compare(mid, position) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Walks one user's time-ordered rows from newest to oldest, stopping on matches
+     */
+    private static final class UserCursor {
+        private final EventRows rows;
+        private final IntPredicate matches;
+        private int index;
+
+        // All of the user's matches, when counted
+        long matchCount;
+
+        /**
+         * @param start index just past the newest event to visit
+         */
+        UserCursor(EventRows rows, int start, IntPredicate matches) {
+            this.rows = rows;
+            this.matches = matches;
+            this.index = start;
+        }
+
+        AuditEvent current() {
+            return rows.event(index);
+        }
+
+        /**
+         * Move to the next older matching event
+         *
+         * @return false once no matching events remain
+         */
+        boolean advance() {
+            while (--index >= 0) {
+                if (matches.test(index)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Apply a search step to each user in parallel, at most loadParallelism at a time.
+     * Each user's log is loaded (or revalidated) first; a load holds its permit until it
+     * finishes. A user is left out of this search if no permit frees up within loadTimeout,
+     * or if their load then takes longer than loadTimeout or fails. The load carries on in
+     * the background and its result is cached for later searches.
+     *
+     * @return the results in username order, excluding users that were left out
+     */
+    private <T> List<T> fanOut(List<String> usernames, BiFunction<String, UserAuditLog, T> perUser) {
+        Semaphore permits = new Semaphore(config.getAudit().getLoadParallelism());
+        long timeoutMillis = config.getAudit().getLoadTimeout().toMillis();
+
+        List<Future<T>> futures = new ArrayList<>(usernames.size());
+        for (String username : usernames) {
+            futures.add(searchExecutor.submit(() -> {
+                if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                    throw new TimeoutException("No load permit within " + timeoutMillis + "ms");
+                }
+                Future<UserAuditLog> load;
+                try {
+                    load = searchExecutor.submit(() -> {
+                        try {
+                            return getUserLog(username);
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    permits.release();
+                    throw e;
+                }
+                return perUser.apply(username, load.get(timeoutMillis, TimeUnit.MILLISECONDS));
+            }));
+        }
+
+        List<T> results = new ArrayList<>(usernames.size());
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(futures.get(i).get());
+            } catch (ExecutionException e) {
+                log.warn("Leaving user out of audit search: " + usernames.get(i),
+                        e.getCause() instanceof ExecutionException ? e.getCause().getCause() : e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(future -> future.cancel(true));
+                throw new StorageException("Interrupted while searching audit logs", e);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Stop in-flight search loads on shutdown
+     */
+    @PreDestroy
+    public void shutdown() {
+        searchExecutor.shutdownNow();
+    }
+
+    /**
+     * Search the time-partitioned store, plus events still waiting in the write-behind queue
+     */
+    private List<AuditEvent> searchPartitions(SearchCriteria criteria) throws IOException {
+        // Snapshot queued events first: one written in between is then seen twice, never missed
+        List<AuditEvent> queued = writeQueue.pendingUsernames().stream()
+                .flatMap(username -> writeQueue.pendingEvents(username).stream())
+                .toList();
+
+        Map<String, AuditEvent> events = new LinkedHashMap<>();
+        for (AuditEvent event : partitions.search(criteria)) {
+            events.putIfAbsent(event.getEventId(), event);
+        }
+        queued.forEach(event -> events.putIfAbsent(event.getEventId(), event));
+
+        return events.values().stream()
                 .filter(event -> matchesCriteria(event, criteria))
-                .sorted(Comparator.comparing(AuditEvent::getTimestamp).reversed())
+                .sorted(NEWEST_FIRST)
                 .collect(Collectors.toList());
     }
 
+    private boolean isDateBounded(SearchCriteria criteria) {
+        return criteria != null && (criteria.getStartDate() != null || criteria.getEndDate() != null);
+    }
+
     /**
-     * Get the original filename for a stored file from audit records
+     * Load every user's audit log into the cache, up to loadParallelism at a time on virtual threads
+     *
+     * @return the number of users loaded
+     */
+    public int warmCache() throws InterruptedException {
+        List<String> usernames = getAllUsernames();
+        Semaphore permits = new Semaphore(config.getAudit().getLoadParallelism());
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String username : usernames) {
+                permits.acquire();
+                executor.submit(() -> {
+                    try {
+                        getUserLog(username);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        } // Waits for the remaining loads
+        return usernames.size();
+    }
+
+    /**
+     * Get the original filename for a stored file from the upload filename index
      */
     public String getOriginalFilename(String username, String storedFilename) {
-        return getUserEvents(username).stream()
-                .filter(event -> storedFilename.equals(event.getStoredAs()))
-                .findFirst()
-                .map(AuditEvent::getFilename)
+        return filenameIndex.lookup(username, storedFilename)
                 .orElse(storedFilename); // Fallback to stored filename
     }
 
     /**
-     * Get audit events for a specific user (with caching)
+     * Get the audit log for a specific user (with caching)
      */
-    private List<AuditEvent> getUserEvents(String username) {
-        return perUserCache.computeIfAbsent(username, this::loadUserAudit);
+    private UserAuditLog getUserLog(String username) {
+        UserAuditLog userLog = perUserCache.getIfPresent(username);
+        if (userLog == null) {
+            return load(username);
+        }
+        if (userLog.validatedWithin(config.getAudit().getRevalidateInterval())) {
+            return userLog;
+        }
+        return revalidate(username, userLog);
     }
 
     /**
-     * Load audit events from user's CSV file
+     * Bring a cached log up to date with storage, which other instances may have written to.
+     * Checked with metadata only; new segments and the newly appended tail of the base
+     * file are read and appended, and any other change reloads the user.
      */
-    private List<AuditEvent> loadUserAudit(String username) {
-        String path = config.getAuditIndexPath() + "/" + username + ".csv";
-
+    private UserAuditLog revalidate(String username, UserAuditLog cached) {
+        AuditLogStore.LogVersion known = cached.version();
+        AuditLogStore.LogVersion current;
         try {
-            if (!storage.exists(path)) {
-                log.debug("No audit file for user: {}", username);
-                return new ArrayList<>();
-            }
+            current = auditLog.version(username);
+        } catch (StorageException e) {
+            log.warn("Could not revalidate cached audit log for user: " + username, e);
+            return cached;
+        }
 
-            String csv = storage.readString(path);
-            CSVParser parser = CSVParser.parse(csv, CSVFormat.DEFAULT.withFirstRecordAsHeader());
+        if (current.equals(known)) {
+            cached.validated(current);
+            return cached;
+        }
 
-            List<AuditEvent> events = parser.stream()
-                    .map(this::recordToAuditEvent)
-                    .collect(Collectors.toList());
+        List<AuditEvent> added = known == null ? null : readChanges(username, known, current);
+        if (added != null) {
+            // Appends ignore events already cached, such as ones this instance recorded
+            UserAuditLog updated = perUserCache.asMap().computeIfPresent(username, (u, existing) -> {
+                if (existing == cached) {
+                    added.forEach(existing::append);
+                    existing.validated(current);
+                }
+                return existing;
+            });
+            log.debug("Read {} new audit events from storage for user: {}", added.size(), username);
+            return updated != null ? updated : cached;
+        }
 
-            log.debug("Loaded {} audit events for user: {}", events.size(), username);
-            return events;
+        log.debug("Audit log changed in storage, reloading user: {}", username);
+        return install(username, cached, loadUserLog(username));
+    }
 
-        } catch (IOException e) {
-            log.error("Failed to read audit file for user: " + username, e);
-            return new ArrayList<>();
+    /**
+     * Load a user who is not cached. The read happens outside the cache's mapping
+     * functions, so a slow load never blocks other users' entries; concurrent
+     * callers for the same user share one load.
+     */
+    private UserAuditLog load(String username) {
+        CompletableFuture<UserAuditLog> mine = new CompletableFuture<>();
+        CompletableFuture<UserAuditLog> inFlight = loading.putIfAbsent(username, mine);
+        if (inFlight != null) {
+            try {
+                return inFlight.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        try {
+            UserAuditLog installed = install(username, null, loadUserLog(username));
+            mine.complete(installed);
+            return installed;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(username, mine);
         }
     }
 
     /**
-     * Append an audit event to user's CSV file
+     * Cache a freshly loaded log in place of the one it replaces (null if the user was not
+     * cached), unless another load got there first. Events recorded while it was loading
+     * are still queued, so they are added here; anything written to storage meanwhile is
+     * picked up by the next revalidation.
      */
-    private void appendAuditEvent(String username, Object... values) {
-        String path = config.getAuditIndexPath() + "/" + username + ".csv";
-        boolean fileExists = storage.exists(path);
+    private UserAuditLog install(String username, UserAuditLog replacing, UserAuditLog loaded) {
+        return perUserCache.asMap().compute(username, (u, existing) -> {
+            UserAuditLog current = existing == null || existing == replacing ? loaded : existing;
+            writeQueue.pendingEvents(u).forEach(current::append);
+            return current;
+        });
+    }
 
+    /**
+     * Read the events written to a user's log since a known version, without re-reading
+     * what is already cached: new segments, plus the tail of the base file if a
+     * compaction has appended to it
+     *
+     * @return the events, or null if the log changed some other way and must be reloaded
+     */
+    private List<AuditEvent> readChanges(String username, AuditLogStore.LogVersion known,
+                                         AuditLogStore.LogVersion current) {
         try {
-            StringWriter sw = new StringWriter();
-            CSVPrinter printer = new CSVPrinter(sw, CSVFormat.DEFAULT);
-
-            // Write header if new file
-            if (!fileExists) {
-                printer.printRecord((Object[]) CSV_HEADERS);
+            List<AuditEvent> added = new ArrayList<>();
+            if (!current.sameBaseAs(known)) {
+                Optional<List<AuditEvent>> tail = current.baseGrewFrom(known)
+                        ? auditLog.loadBaseTail(username, known.baseSize(), current.baseSize())
+                        : Optional.empty();
+                if (tail.isEmpty()) {
+                    return null;
+                }
+                added.addAll(tail.get());
             }
+            added.addAll(auditLog.loadSegments(current.segmentsSince(known)));
+            return added;
+
+        } catch (IOException | StorageException e) {
+            log.warn("Failed to read new audit events for user: " + username, e);
+            return null;
+        }
+    }
 
-            // Write the event record
-            printer.printRecord(values);
-            printer.close();
+    /**
+     * Get a user's rows that can match the criteria, oldest first.
+     * Narrowed by event type, by the filename index when filtering on filename,
+     * and to the date range when one is given.
+     */
+    private EventRows candidateRows(UserAuditLog userLog, SearchCriteria criteria) {
+        String eventType = eventTypeOf(criteria);
+
+        EventRows rows = null;
+        if (criteria != null && criteria.getFilename() != null) {
+            rows = userLog.searchFilename(criteria.getFilename(), eventType);
+        }
+        if (rows == null) {
+            rows = userLog.rows(eventType);
+        }
+        return isDateBounded(criteria) ? withinDates(rows, criteria) : rows;
+    }
+
+    /**
+     * Narrow time-ordered rows to the criteria's date range by binary search on the epoch day column
+     */
+    private EventRows withinDates(EventRows rows, SearchCriteria criteria) {
+        int from = criteria.getStartDate() == null ? 0
+                : firstOnOrAfter(rows, criteria.getStartDate().toEpochDay());
+        int to = criteria.getEndDate() == null ? rows.size()
+                : firstOnOrAfter(rows, criteria.getEndDate().toEpochDay() + 1);
+        return rows.slice(from, Math.max(from, to));
+    }
 
-            // Append to file or create new file
-            if (fileExists) {
-                storage.append(path, sw.toString());
+    private static int firstOnOrAfter(EventRows rows, long epochDay) {
+        int low = 0;
+        int high = rows.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (rows.epochDay(mid) < epochDay) {
+                low = mid + 1;
             } else {
-                storage.writeString(path, sw.toString());
+                high = mid;
             }
-
-        } catch (IOException e) {
-            log.error("Failed to append audit event for user: " + username, e);
-            throw new RuntimeException("Failed to record audit event", e);
         }
+        return low;
+    }
+
+    private String eventTypeOf(SearchCriteria criteria) {
+        return criteria == null ? null : criteria.getEventType();
     }
 
     /**
-     * Convert CSV record to AuditEvent object
+     * Add a newly recorded event to the user's cached events, if they are cached.
+     * An in-flight load of the same user adds it from the write queue when it is installed.
+     * Going through compute also re-weighs the user's entry.
      */
-    private AuditEvent recordToAuditEvent(CSVRecord record) {
-        return AuditEvent.builder()
-                .eventId(record.get("event_id"))
-                .eventType(record.get("event_type"))
-                .timestamp(Instant.parse(record.get("timestamp")))
-                .username(record.get("username"))
-                .filename(record.get("filename"))
-                .storedAs(record.get("stored_as"))
-                .fileSize(parseOptionalLong(record, "file_size"))
-                .contentType(getOptional(record, "content_type"))
-                .ipAddress(record.get("ip_address"))
-                .userAgent(getOptional(record, "user_agent"))
-                .sessionId(getOptional(record, "session_id"))
-                .actorUsername(record.get("actor_username"))
-                .build();
+    private void updateCache(String username, AuditEvent event) {
+        perUserCache.asMap().computeIfPresent(username, (u, cached) -> {
+            cached.append(event);
+            return cached;
+        });
     }
 
     /**
-     * Get optional string value from CSV record
+     * Load a user's audit log from their base CSV file and pending segments,
+     * plus any events still waiting in the write-behind queue
      */
-    private String getOptional(CSVRecord record, String column) {
+    private UserAuditLog loadUserLog(String username) {
         try {
-            String value = record.isMapped(column) ? record.get(column) : null;
-            return (value == null || value.isBlank()) ? null : value;
-        } catch (IllegalArgumentException e) {
-            return null;
+            // Snapshot queued events first: one written in between is then seen twice, never missed
+            List<AuditEvent> queued = writeQueue.pendingEvents(username);
+            AuditLogStore.VersionedEvents stored = auditLog.loadVersioned(username);
+            List<AuditEvent> events = mergeEvents(stored.events(), queued);
+
+            log.debug("Loaded {} audit events for user: {}", events.size(), username);
+            UserAuditLog userLog = UserAuditLog.of(events);
+            userLog.validated(stored.version());
+            return userLog;
+
+        } catch (IOException e) {
+            log.error("Failed to read audit file for user: " + username, e);
+            // No version, so the next search after this one tries again
+            return UserAuditLog.of(new ArrayList<>());
         }
     }
 
     /**
-     * Parse optional long value from CSV record
+     * Merge queued events into events loaded from storage, dropping duplicates
      */
-    private Long parseOptionalLong(CSVRecord record, String column) {
-        String value = getOptional(record, column);
-        if (value == null) {
-            return null;
+    private List<AuditEvent> mergeEvents(List<AuditEvent> stored, List<AuditEvent> queued) {
+        if (queued.isEmpty()) {
+            return stored;
         }
+
+        Set<String> storedIds = stored.stream()
+                .map(AuditEvent::getEventId)
+                .collect(Collectors.toSet());
+
+        List<AuditEvent> merged = new ArrayList<>(stored);
+        queued.stream()
+                .filter(event -> !storedIds.contains(event.getEventId()))
+                .forEach(merged::add);
+        merged.sort(Comparator.comparing(AuditEvent::getTimestamp));
+        return merged;
+    }
+
+    /**
+     * Hand an audit event to the write-behind queue for the user's audit log
+     */
+    private void appendAuditEvent(String username, AuditEvent event) {
         try {
-            return Long.parseLong(value);
-        } catch (NumberFormatException e) {
-            return null;
+            writeQueue.submit(event);
+        } catch (StorageException e) {
+            log.error("Failed to append audit event for user: " + username, e);
+            throw new RuntimeException("Failed to record audit event", e);
         }
     }
 
@@ -259,30 +677,46 @@ public class AuditService {
      * Check if audit event matches search criteria
      */
     private boolean matchesCriteria(AuditEvent event, SearchCriteria criteria) {
+        return criteria == null || (matchesFilename(criteria, event.getFilename())
+                && matchesCriteria(criteria, event.getUsername(), event.getEventType(), event.getEpochDay()));
+    }
+
+    /**
+     * Check if a cached row matches search criteria, reading only the columns it filters on.
+     * Rows found through the filename index are not checked against the filename again.
+     */
+    private boolean matchesCriteria(EventRows rows, int index, SearchCriteria criteria) {
         if (criteria == null) {
             return true;
         }
+        boolean filenameChecked = criteria.getFilename() == null || rows.filenameMatched();
+        return (filenameChecked || matchesFilename(criteria, rows.filename(index)))
+                && matchesCriteria(criteria, rows.username(index), rows.eventType(index), rows.epochDay(index));
+    }
 
-        if (criteria.getFilename() != null &&
-                !event.getFilename().toLowerCase().contains(criteria.getFilename().toLowerCase())) {
+    private static boolean matchesFilename(SearchCriteria criteria, String filename) {
+        return criteria.getFilename() == null
+                || filename.toLowerCase(Locale.ROOT).contains(criteria.getFilename().toLowerCase(Locale.ROOT));
+    }
+
+    private static boolean matchesCriteria(SearchCriteria criteria, String username, String eventType, long epochDay) {
+        if (criteria.getUsername() != null &&
+                !username.equals(criteria.getUsername())) {
             return false;
         }
 
-        if (criteria.getUsername() != null &&
-                !event.getUsername().equals(criteria.getUsername())) {
+        if (criteria.getEventType() != null &&
+                !criteria.getEventType().equals(eventType)) {
             return false;
         }
 
-        if (criteria.getStartDate() != null) {
-            LocalDate eventDate = event.getTimestamp().atZone(ZoneId.systemDefault()).toLocalDate();
-            if (eventDate.isBefore(criteria.getStartDate())) {
-                return false;
-            }
+        if (criteria.getStartDate() != null &&
+                epochDay < criteria.getStartDate().toEpochDay()) {
+            return false;
         }
 
         if (criteria.getEndDate() != null) {
-            LocalDate eventDate = event.getTimestamp().atZone(ZoneId.systemDefault()).toLocalDate();
-            return !eventDate.isAfter(criteria.getEndDate());
+            return epochDay <= criteria.getEndDate().toEpochDay();
         }
 
         return true;
@@ -300,27 +734,18 @@ public class AuditService {
     }
 
     /**
-     * Get all usernames from audit index files
+     * Canonical instance of a repeated request value, so queued events share it
      */
-    private List<String> getAllUsernames() {
-        return storage.listFiles(config.getAuditIndexPath()).stream()
-                .filter(path -> path.endsWith(".csv"))
-                .map(this::extractUsernameFromPath)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+    private static String shared(String value) {
+        return AuditStringDictionary.SHARED.intern(value);
     }
 
     /**
-     * Extract username from audit file path
+     * Get all usernames from audit index files
      */
-    private String extractUsernameFromPath(String path) {
-        // Handle both Unix and Windows path separators
-        int lastSlash = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
-        int lastDot = path.lastIndexOf('.');
-
-        if (lastSlash >= 0 && lastDot > lastSlash) {
-            return path.substring(lastSlash + 1, lastDot);
-        }
-        return null;
+    private List<String> getAllUsernames() {
+        Set<String> usernames = new LinkedHashSet<>(auditLog.listUsernames());
+        usernames.addAll(writeQueue.pendingUsernames());
+        return new ArrayList<>(usernames);
     }
 }
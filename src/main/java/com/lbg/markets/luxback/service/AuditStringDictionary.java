@@ -0,0 +1,100 @@
+package com.lbg.markets.luxback.service;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide dictionary for values that repeat across audit events
+ * (event types, usernames, content types).
+ * Each distinct value gets one canonical instance and a stable int ID, so
+ * cached events share strings and can be filtered by comparing IDs.
+ * <p>
+ * Entries are never removed, so the dictionary stops assigning IDs once it
+ * holds {@code maxEntries} values; callers then keep the value as-is.
+ * Only values from a small, slow-growing set belong here: values a client
+ * chooses (IP addresses, user agents) and high-cardinality fields such as
+ * session IDs are dictionary-encoded per user log or chunk instead, so they
+ * are freed with it.
+ */
+final class AuditStringDictionary {
+
+    static final int NONE = -1;
+
+    /**
+     * Shared by the CSV decoder, the audit cache and event recording
+     */
+    static final AuditStringDictionary SHARED = new AuditStringDictionary(1 << 20);
+
+    private final int maxEntries;
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+
+    // ID -> value; slots are written before the ID is published through the map
+    private volatile String[] values = new String[256];
+    private int size; // Guarded by this
+
+    AuditStringDictionary(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * The canonical instance of a value, or the value itself if the dictionary is full
+     */
+    String intern(String value) {
+        int id = idFor(value);
+        return id == NONE ? value : values[id];
+    }
+
+    /**
+     * The ID of a value, adding it if needed
+     *
+     * @return the ID, or {@link #NONE} for null or if the dictionary is full
+     */
+    int idFor(String value) {
+        if (value == null) {
+            return NONE;
+        }
+        Integer id = ids.get(value);
+        return id != null ? id : add(value);
+    }
+
+    /**
+     * The ID of a value without adding it
+     *
+     * @return the ID, or {@link #NONE} if the value has never been added
+     */
+    int idOf(String value) {
+        Integer id = value == null ? null : ids.get(value);
+        return id == null ? NONE : id;
+    }
+
+    /**
+     * The value for an ID previously returned by {@link #idFor}
+     */
+    String value(int id) {
+        return values[id];
+    }
+
+    int size() {
+        return ids.size();
+    }
+
+    private synchronized int add(String value) {
+        Integer existing = ids.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        if (size == maxEntries) {
+            return NONE;
+        }
+
+        String[] current = values;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+            values = current;
+        }
+        int id = size++;
+        current[id] = value;
+        ids.put(value, id);
+        return id;
+    }
+}
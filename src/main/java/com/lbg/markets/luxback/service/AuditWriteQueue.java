@@ -0,0 +1,559 @@
+package com.lbg.markets.luxback.service;
+
+import com.lbg.markets.luxback.config.LuxBackConfig;
+import com.lbg.markets.luxback.exception.StorageException;
+import com.lbg.markets.luxback.model.AuditEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Write-behind queue for audit events.
+ * Request threads append each event to a local write-ahead log and return;
+ * a background writer coalesces queued events per user over the flush
+ * interval and writes each user's batch as a single audit segment.
+ * <p>
+ * Each instance logs to its own file beside the configured WAL path, whose
+ * modification time it refreshes while running. A file left behind by a crashed
+ * instance goes stale; any instance sharing the volume then claims it, copies
+ * its events into its own WAL and writes them. Delivery is at-least-once: a
+ * replayed event that had already been written is dropped by event ID when the
+ * audit log is loaded. The WAL only survives as long as the disk it is on, so
+ * it must be configured on a durable volume.
+ * <p>
+ * Concurrent submits share WAL syncs (group commit): each waits until a sync
+ * covers its append, and one sync covers every append made before it started.
+ * Once every event before some point in the WAL has been written, the file is
+ * truncated, or rewritten without that prefix, so it never holds much more
+ * than the events still in flight.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AuditWriteQueue {
+
+    // Claimed WAL files of other instances, while their events are being copied
+    private static final String CLAIMED = ".claimed";
+
+    // Written bytes at the front of the WAL are only rewritten away past this size
+    private static final long MIN_ROTATE_BYTES = 64 * 1024;
+
+    private final AuditLogStore auditLog;
+    private final AuditPartitionStore partitions;
+    private final LuxBackConfig config;
+
+    // Guards WAL appends and truncation against the WAL offsets of unwritten events
+    private final Object walLock = new Object();
+
+    // Serializes WAL syncs; a submit whose append an earlier sync covered skips its own
+    private final Object syncLock = new Object();
+
+    // Appends made to the WAL, and the number covered by the last completed sync
+    private long walAppends; // Guarded by walLock
+    private volatile long walSynced;
+
+    // WAL size, and the offset each unwritten event's record starts at (guarded by walLock)
+    private long walSize;
+    private final Map<AuditEvent, Long> walStarts = new IdentityHashMap<>();
+    private final NavigableMap<Long, AuditEvent> walOffsets = new TreeMap<>();
+
+    // Events accepted but not yet written to storage, per user, so loads can still see them
+    private final ConcurrentHashMap<String, Queue<AuditEvent>> unwritten = new ConcurrentHashMap<>();
+    private final AtomicInteger unwrittenCount = new AtomicInteger();
+
+    // Events whose write failed, retried first on the next flush (guarded by this)
+    private final List<AuditEvent> retry = new ArrayList<>();
+
+    private final AtomicBoolean earlyFlushScheduled = new AtomicBoolean();
+
+    private BlockingQueue<AuditEvent> queue;
+    private FileChannel wal;
+    private Path walFile;
+    private ScheduledExecutorService writer;
+
+    // When this instance last refreshed its WAL's modification time, and looked for stale WALs
+    private long walTouchedAt;
+    private long orphansCheckedAt;
+
+    /**
+     * Open this instance's WAL, replay any left by crashed instances and start the background writer
+     */
+    @PostConstruct
+    public void start() {
+        LuxBackConfig.Audit audit = config.getAudit();
+        if (audit.getWalPath() == null || audit.getWalPath().isBlank()) {
+            throw new IllegalStateException(
+                    "luxback.audit.wal-path must be set to a file on a durable volume");
+        }
+        queue = new LinkedBlockingQueue<>(audit.getQueueCapacity());
+
+        try {
+            Path walPath = Paths.get(audit.getWalPath()).toAbsolutePath();
+            Files.createDirectories(walPath.getParent());
+            walFile = walPath.resolveSibling(stem(walPath) + "-" + UUID.randomUUID() + extension(walPath));
+            wal = FileChannel.open(walFile,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            walTouchedAt = System.currentTimeMillis();
+        } catch (IOException e) {
+            throw new StorageException("Failed to open audit write-ahead log: " + audit.getWalPath(), e);
+        }
+        adoptOrphanedWals();
+
+        writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "audit-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long intervalMs = audit.getFlushInterval().toMillis();
+        writer.scheduleWithFixedDelay(this::flushQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Accept an audit event for writing.
+     * Returns once the event is retained: synced to the WAL, or written to storage. If the
+     * queue is full or the WAL fails it is written on the caller's thread; a WAL-logged event
+     * whose write fails is kept for the background writer to retry.
+     *
+     * @throws StorageException if the event could be neither logged nor written; it is then
+     *                          discarded and never written
+     */
+    public void submit(AuditEvent event) {
+        long append;
+        synchronized (walLock) {
+            append = appendToWal(event);
+            unwritten.computeIfAbsent(event.getUsername(), k -> new ConcurrentLinkedQueue<>()).add(event);
+            unwrittenCount.incrementAndGet();
+        }
+        boolean logged = append > 0 && syncWal(append);
+
+        if (!logged || !queue.offer(event)) {
+            log.warn("Audit write-behind unavailable, writing synchronously: user={}", event.getUsername());
+            if (writeNow(event)) {
+                return;
+            }
+            if (!logged) {
+                discard(event);
+                throw new StorageException("Failed to write audit event: " + event.getEventId());
+            }
+            log.warn("Audit event kept in write-ahead log for retry: id={}", event.getEventId());
+            return;
+        }
+
+        // Don't wait for the next interval once a full batch is ready
+        if (queue.size() >= config.getAudit().getMaxBatchSize() && earlyFlushScheduled.compareAndSet(false, true)) {
+            try {
+                writer.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                log.debug("Audit writer shutting down, batch left for the final flush");
+            }
+        }
+    }
+
+    /**
+     * Write every event accepted so far to storage.
+     * Events whose write fails stay queued for the next flush, and audit
+     * partition chunks that failed to write earlier are retried.
+     */
+    public synchronized void flush() {
+        earlyFlushScheduled.set(false);
+
+        List<AuditEvent> batch = new ArrayList<>(retry);
+        retry.clear();
+
+        int maxBatchSize = config.getAudit().getMaxBatchSize();
+        queue.drainTo(batch, Math.max(0, maxBatchSize - batch.size()));
+
+        while (!batch.isEmpty()) {
+            if (!write(batch)) {
+                break; // Back off until the next interval
+            }
+            batch = new ArrayList<>();
+            queue.drainTo(batch, maxBatchSize);
+        }
+        partitions.retryFailedChunks();
+
+        compactWal();
+        touchWal();
+        if (System.currentTimeMillis() - orphansCheckedAt >= config.getAudit().getWalOrphanAfter().toMillis()) {
+            adoptOrphanedWals();
+        }
+    }
+
+    /**
+     * Events for a user that have been accepted but not yet written to storage
+     */
+    public List<AuditEvent> pendingEvents(String username) {
+        Queue<AuditEvent> events = unwritten.get(username);
+        return events == null ? List.of() : List.copyOf(events);
+    }
+
+    /**
+     * Users with events that have been accepted but not yet written to storage
+     */
+    public Set<String> pendingUsernames() {
+        return unwritten.entrySet().stream()
+                .filter(entry -> !entry.getValue().isEmpty())
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Stop the background writer and flush everything still queued
+     */
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Audit writer did not stop within 10 seconds");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        flush();
+
+        try {
+            wal.close();
+            if (unwrittenCount.get() > 0) {
+                log.error("{} audit events could not be written before shutdown; they remain in the WAL for replay: {}",
+                        unwrittenCount.get(), walFile);
+            } else {
+                Files.deleteIfExists(walFile);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to close audit write-ahead log", e);
+        }
+    }
+
+    /**
+     * This instance's WAL file
+     */
+    Path walFile() {
+        return walFile;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Audit flush failed", e);
+        }
+    }
+
+    /**
+     * Write one event on the caller's thread
+     *
+     * @return false if the write failed (the event is kept for retry)
+     */
+    private synchronized boolean writeNow(AuditEvent event) {
+        if (!write(List.of(event))) {
+            return false;
+        }
+        compactWal();
+        return true;
+    }
+
+    /**
+     * Drop an event that was never logged or written, so it is not retried
+     */
+    private synchronized void discard(AuditEvent event) {
+        retry.remove(event);
+        markWritten(event.getUsername(), List.of(event));
+    }
+
+    /**
+     * Write a batch as one segment per user, then copy it into the audit partitions
+     *
+     * @return false if any user's write failed (those events are kept for retry)
+     */
+    private boolean write(List<AuditEvent> batch) {
+        Map<String, List<AuditEvent>> byUser = batch.stream()
+                .collect(Collectors.groupingBy(AuditEvent::getUsername, LinkedHashMap::new, Collectors.toList()));
+
+        Map<String, List<AuditEvent>> written = new LinkedHashMap<>();
+        for (Map.Entry<String, List<AuditEvent>> entry : byUser.entrySet()) {
+            String username = entry.getKey();
+            List<AuditEvent> events = entry.getValue();
+            try {
+                auditLog.append(username, events);
+                written.put(username, events);
+                log.debug("Wrote {} audit events for user: {}", events.size(), username);
+            } catch (StorageException e) {
+                log.error("Failed to write " + events.size() + " audit events for user: " + username, e);
+                retry.addAll(events);
+            }
+        }
+
+        // Before marking written, so a crash here replays the events into the partitions
+        if (!written.isEmpty()) {
+            partitions.append(written.values().stream().flatMap(List::stream).toList());
+        }
+        written.forEach(this::markWritten);
+
+        return written.size() == byUser.size();
+    }
+
+    private void markWritten(String username, List<AuditEvent> events) {
+        Set<String> ids = events.stream().map(AuditEvent::getEventId).collect(Collectors.toSet());
+        Queue<AuditEvent> pending = unwritten.get(username);
+        if (pending != null) {
+            pending.removeIf(event -> ids.contains(event.getEventId()));
+        }
+        unwrittenCount.addAndGet(-events.size());
+
+        synchronized (walLock) {
+            for (AuditEvent event : events) {
+                Long start = walStarts.remove(event);
+                if (start != null) {
+                    walOffsets.remove(start);
+                }
+            }
+        }
+    }
+
+    /**
+     * Append an event to the WAL, without syncing it. Called holding walLock.
+     *
+     * @return the append's sequence number for {@link #syncWal}, or 0 if it failed
+     */
+    private long appendToWal(AuditEvent event) {
+        try {
+            ByteBuffer bytes = ByteBuffer.wrap(
+                    auditLog.formatSegment(List.of(event)).getBytes(StandardCharsets.UTF_8));
+            long start = walSize;
+            while (bytes.hasRemaining()) {
+                walSize += wal.write(bytes);
+            }
+            walStarts.put(event, start);
+            walOffsets.put(start, event);
+            return ++walAppends;
+        } catch (IOException e) {
+            log.error("Failed to append audit event to write-ahead log", e);
+            return 0;
+        }
+    }
+
+    /**
+     * Wait until a WAL sync covers the given append, syncing if no earlier one did.
+     * A sync covers every append made before it started, so submits queued behind
+     * one sync are all covered by the next rather than syncing one by one.
+     *
+     * @return false if the sync failed
+     */
+    private boolean syncWal(long append) {
+        synchronized (syncLock) {
+            if (walSynced >= append) {
+                return true;
+            }
+            long covered;
+            synchronized (walLock) {
+                covered = walAppends;
+            }
+            try {
+                wal.force(false);
+                walSynced = covered;
+                return true;
+            } catch (IOException e) {
+                log.error("Failed to sync audit write-ahead log", e);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Drop the front of the WAL once every event in it has reached storage: truncate the
+     * file if nothing is left, or rewrite it from the oldest unwritten event once the
+     * written prefix is at least half of it
+     */
+    private void compactWal() {
+        synchronized (syncLock) {
+            synchronized (walLock) {
+                long written = walOffsets.isEmpty() ? walSize : walOffsets.firstKey();
+                if (written == 0 || (written < walSize && (written < MIN_ROTATE_BYTES || written < walSize / 2))) {
+                    return;
+                }
+                try {
+                    if (written == walSize) {
+                        wal.truncate(0);
+                    } else {
+                        rewriteWalFrom(written);
+                    }
+                } catch (IOException e) {
+                    log.warn("Failed to compact audit write-ahead log", e);
+                    return;
+                }
+
+                walSize -= written;
+                NavigableMap<Long, AuditEvent> shifted = new TreeMap<>();
+                walOffsets.forEach((start, event) -> {
+                    shifted.put(start - written, event);
+                    walStarts.put(event, start - written);
+                });
+                walOffsets.clear();
+                walOffsets.putAll(shifted);
+            }
+        }
+    }
+
+    /**
+     * Replace the WAL with a synced copy of its tail, from the given offset.
+     * Called holding syncLock and walLock.
+     */
+    private void rewriteWalFrom(long offset) throws IOException {
+        Path tail = walFile.resolveSibling(walFile.getFileName() + ".tmp");
+        try (FileChannel in = FileChannel.open(walFile, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(tail, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = offset;
+            while (position < walSize) {
+                long copied = in.transferTo(position, walSize - position, out);
+                if (copied <= 0) {
+                    throw new IOException("Audit write-ahead log is shorter than expected: " + walFile);
+                }
+                position += copied;
+            }
+            out.force(false);
+        }
+        Files.move(tail, walFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        wal.close();
+        wal = FileChannel.open(walFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        walSynced = walAppends; // The copy was synced, including appends not yet synced in the old file
+    }
+
+    /**
+     * Refresh the WAL's modification time, which tells other instances this one is alive
+     */
+    private void touchWal() {
+        long now = System.currentTimeMillis();
+        if (now - walTouchedAt < config.getAudit().getWalOrphanAfter().toMillis() / 4) {
+            return;
+        }
+        try {
+            Files.setLastModifiedTime(walFile, FileTime.fromMillis(now));
+            walTouchedAt = now;
+        } catch (IOException e) {
+            log.warn("Failed to refresh audit write-ahead log: " + walFile, e);
+        }
+    }
+
+    /**
+     * Replay the WALs of instances that stopped without writing all their events: any
+     * file beside this one not modified for walOrphanAfter. Each is claimed by renaming
+     * it, so only one instance replays it, and deleted once its events are in this WAL.
+     */
+    private synchronized void adoptOrphanedWals() {
+        orphansCheckedAt = System.currentTimeMillis();
+        Path configured = Paths.get(config.getAudit().getWalPath()).toAbsolutePath();
+        String prefix = stem(configured) + "-";
+        String extension = extension(configured);
+        long staleBefore = orphansCheckedAt - config.getAudit().getWalOrphanAfter().toMillis();
+
+        List<Path> orphans;
+        try (var files = Files.list(walFile.getParent())) {
+            orphans = files
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        return !path.equals(walFile) && (name.equals(configured.getFileName().toString())
+                                || name.startsWith(prefix) && (name.endsWith(extension) || name.endsWith(extension + CLAIMED)));
+                    })
+                    .filter(path -> lastModified(path) < staleBefore)
+                    .toList();
+        } catch (IOException e) {
+            log.warn("Failed to look for orphaned audit write-ahead logs", e);
+            return;
+        }
+        orphans.forEach(this::adopt);
+    }
+
+    private void adopt(Path orphan) {
+        Path claimed = walFile.resolveSibling(stem(walFile) + "-" + UUID.randomUUID() + extension(walFile) + CLAIMED);
+        List<AuditEvent> events;
+        try {
+            Files.move(orphan, claimed, StandardCopyOption.ATOMIC_MOVE);
+            Files.setLastModifiedTime(claimed, FileTime.from(Instant.now()));
+            try (var reader = Files.newBufferedReader(claimed, StandardCharsets.UTF_8)) {
+                events = auditLog.parseSegment(reader);
+            }
+        } catch (NoSuchFileException e) {
+            return; // Claimed by another instance
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to replay audit write-ahead log: " + orphan, e);
+            return;
+        }
+
+        boolean logged = true;
+        synchronized (syncLock) {
+            synchronized (walLock) {
+                for (AuditEvent event : events) {
+                    logged &= appendToWal(event) > 0;
+                    unwritten.computeIfAbsent(event.getUsername(), k -> new ConcurrentLinkedQueue<>()).add(event);
+                    unwrittenCount.incrementAndGet();
+                }
+            }
+        }
+        logged = logged && syncWal(walAppends());
+        for (AuditEvent event : events) {
+            if (!queue.offer(event)) {
+                retry.add(event);
+            }
+        }
+
+        if (logged) {
+            try {
+                Files.delete(claimed);
+            } catch (IOException e) {
+                log.warn("Failed to delete replayed audit write-ahead log: " + claimed, e);
+            }
+        }
+        log.info("Replaying {} audit events from write-ahead log: {}", events.size(), orphan);
+    }
+
+    private long walAppends() {
+        synchronized (walLock) {
+            return walAppends;
+        }
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return Long.MAX_VALUE; // Gone, or claimed meanwhile
+        }
+    }
+
+    private static String stem(Path path) {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    private static String extension(Path path) {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(dot) : "";
+    }
+}
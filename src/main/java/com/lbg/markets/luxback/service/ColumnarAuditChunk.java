@@ -0,0 +1,361 @@
+package com.lbg.markets.luxback.service;
+
+import com.lbg.markets.luxback.model.AuditEvent;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Binary columnar encoding of a batch of audit events.
+ * Each column is stored as a separately deflated block, so a reader can
+ * decode only the columns it filters on and skip the rest:
+ * <pre>
+ * int magic, int rowCount, int columnCount
+ * int[columnCount] block lengths
+ * block[columnCount]
+ * </pre>
+ * Low-cardinality string columns (event type, usernames, content type, IP
+ * address, user agent, session) are dictionary-encoded: the block holds the
+ * distinct values once, then an int code per row, so filters compare codes
+ * and decoded values are shared.
+ */
+final class ColumnarAuditChunk {
+
+    static final int EVENT_ID = 0;
+    static final int EVENT_TYPE = 1;
+    static final int TIMESTAMP = 2;
+    static final int USERNAME = 3;
+    static final int FILENAME = 4;
+    static final int STORED_AS = 5;
+    static final int FILE_SIZE = 6;
+    static final int CONTENT_TYPE = 7;
+    static final int IP_ADDRESS = 8;
+    static final int USER_AGENT = 9;
+    static final int SESSION_ID = 10;
+    static final int ACTOR_USERNAME = 11;
+
+    private static final int COLUMN_COUNT = 12;
+    private static final int MAGIC = 0x4C584332; // "LXC2"
+    private static final int NULL_CODE = -1;
+
+    private final byte[] data;
+    private final int rowCount;
+    private final int[] offsets;
+    private final int[] lengths;
+
+    private ColumnarAuditChunk(byte[] data, int rowCount, int[] offsets, int[] lengths) {
+        this.data = data;
+        this.rowCount = rowCount;
+        this.offsets = offsets;
+        this.lengths = lengths;
+    }
+
+    /**
+     * Encode events in the given order
+     */
+    static byte[] encode(List<AuditEvent> events) throws IOException {
+        byte[][] blocks = new byte[COLUMN_COUNT][];
+        for (int column = 0; column < COLUMN_COUNT; column++) {
+            blocks[column] = encodeColumn(events, column);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(events.size());
+            out.writeInt(COLUMN_COUNT);
+            for (byte[] block : blocks) {
+                out.writeInt(block.length);
+            }
+            for (byte[] block : blocks) {
+                out.write(block);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Read the chunk header; column blocks are decoded on demand
+     */
+    static ColumnarAuditChunk read(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a columnar audit chunk");
+        }
+
+        int rowCount = in.readInt();
+        int columnCount = in.readInt();
+        if (columnCount != COLUMN_COUNT) {
+            throw new IOException("Unsupported audit chunk column count: " + columnCount);
+        }
+
+        int[] lengths = new int[columnCount];
+        for (int column = 0; column < columnCount; column++) {
+            lengths[column] = in.readInt();
+        }
+
+        int[] offsets = new int[columnCount];
+        int offset = 3 * Integer.BYTES + columnCount * Integer.BYTES;
+        for (int column = 0; column < columnCount; column++) {
+            offsets[column] = offset;
+            offset += lengths[column];
+        }
+        if (offset > data.length) {
+            throw new IOException("Truncated columnar audit chunk");
+        }
+
+        return new ColumnarAuditChunk(data, rowCount, offsets, lengths);
+    }
+
+    int rowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Decode the timestamp column
+     */
+    Instant[] timestamps() throws IOException {
+        Instant[] values = new Instant[rowCount];
+        try (DataInputStream in = column(TIMESTAMP)) {
+            for (int row = 0; row < rowCount; row++) {
+                values[row] = Instant.ofEpochSecond(in.readLong(), in.readInt());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Decode a string column
+     */
+    String[] strings(int column) throws IOException {
+        String[] values = new String[rowCount];
+        try (DataInputStream in = column(column)) {
+            if (isDictionaryColumn(column)) {
+                String[] dictionary = readDictionary(in, column);
+                for (int row = 0; row < rowCount; row++) {
+                    int code = in.readInt();
+                    values[row] = code == NULL_CODE ? null : dictionary[code];
+                }
+            } else {
+                for (int row = 0; row < rowCount; row++) {
+                    values[row] = readString(in);
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Clear the selected rows whose value in a string column differs from the given one
+     */
+    void retainEqual(int column, String value, BitSet rows) throws IOException {
+        if (!isDictionaryColumn(column)) {
+            String[] values = strings(column);
+            for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+                if (!value.equals(values[row])) {
+                    rows.clear(row);
+                }
+            }
+            return;
+        }
+
+        try (DataInputStream in = column(column)) {
+            String[] dictionary = readDictionary(in, column);
+            int wanted = NULL_CODE;
+            for (int code = 0; code < dictionary.length && wanted == NULL_CODE; code++) {
+                if (value.equals(dictionary[code])) {
+                    wanted = code;
+                }
+            }
+            if (wanted == NULL_CODE) {
+                rows.clear();
+                return;
+            }
+
+            int[] codes = new int[rowCount];
+            for (int row = 0; row < rowCount; row++) {
+                codes[row] = in.readInt();
+            }
+            for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+                if (codes[row] != wanted) {
+                    rows.clear(row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Materialize the selected rows as events, decoding every column
+     */
+    List<AuditEvent> events(BitSet rows) throws IOException {
+        String[][] strings = new String[COLUMN_COUNT][];
+        for (int column = 0; column < COLUMN_COUNT; column++) {
+            if (column != TIMESTAMP && column != FILE_SIZE) {
+                strings[column] = strings(column);
+            }
+        }
+        Instant[] timestamps = timestamps();
+        Long[] fileSizes = fileSizes();
+
+        List<AuditEvent> events = new ArrayList<>(rows.cardinality());
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            events.add(AuditEvent.builder()
+                    .eventId(strings[EVENT_ID][row])
+                    .eventType(strings[EVENT_TYPE][row])
+                    .timestamp(timestamps[row])
+                    .username(strings[USERNAME][row])
+                    .filename(strings[FILENAME][row])
+                    .storedAs(strings[STORED_AS][row])
+                    .fileSize(fileSizes[row])
+                    .contentType(strings[CONTENT_TYPE][row])
+                    .ipAddress(strings[IP_ADDRESS][row])
+                    .userAgent(strings[USER_AGENT][row])
+                    .sessionId(strings[SESSION_ID][row])
+                    .actorUsername(strings[ACTOR_USERNAME][row])
+                    .build());
+        }
+        return events;
+    }
+
+    private Long[] fileSizes() throws IOException {
+        Long[] values = new Long[rowCount];
+        try (DataInputStream in = column(FILE_SIZE)) {
+            for (int row = 0; row < rowCount; row++) {
+                values[row] = in.readBoolean() ? in.readLong() : null;
+            }
+        }
+        return values;
+    }
+
+    private static boolean isDictionaryColumn(int column) {
+        return switch (column) {
+            case EVENT_TYPE, USERNAME, CONTENT_TYPE, IP_ADDRESS, USER_AGENT, SESSION_ID, ACTOR_USERNAME -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Whether a column's values resolve to their instances in the shared dictionary
+     */
+    private static boolean isSharedColumn(int column) {
+        return switch (column) {
+            case EVENT_TYPE, USERNAME, CONTENT_TYPE, ACTOR_USERNAME -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Read a column's distinct values; those of shared columns resolve to their
+     * shared instances, the rest stay local to the chunk
+     */
+    private static String[] readDictionary(DataInputStream in, int column) throws IOException {
+        String[] dictionary = new String[in.readInt()];
+        for (int code = 0; code < dictionary.length; code++) {
+            String value = readString(in);
+            dictionary[code] = isSharedColumn(column) ? AuditStringDictionary.SHARED.intern(value) : value;
+        }
+        return dictionary;
+    }
+
+    private DataInputStream column(int column) {
+        return new DataInputStream(new InflaterInputStream(
+                new ByteArrayInputStream(data, offsets[column], lengths[column])));
+    }
+
+    private static byte[] encodeColumn(List<AuditEvent> events, int column) throws IOException {
+        if (isDictionaryColumn(column)) {
+            return encodeDictionaryColumn(events, column);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            for (AuditEvent event : events) {
+                switch (column) {
+                    case EVENT_ID -> writeString(out, event.getEventId());
+                    case EVENT_TYPE -> writeString(out, event.getEventType());
+                    case TIMESTAMP -> {
+                        out.writeLong(event.getTimestamp().getEpochSecond());
+                        out.writeInt(event.getTimestamp().getNano());
+                    }
+                    case USERNAME -> writeString(out, event.getUsername());
+                    case FILENAME -> writeString(out, event.getFilename());
+                    case STORED_AS -> writeString(out, event.getStoredAs());
+                    case FILE_SIZE -> {
+                        out.writeBoolean(event.getFileSize() != null);
+                        if (event.getFileSize() != null) {
+                            out.writeLong(event.getFileSize());
+                        }
+                    }
+                    case CONTENT_TYPE -> writeString(out, event.getContentType());
+                    case IP_ADDRESS -> writeString(out, event.getIpAddress());
+                    case USER_AGENT -> writeString(out, event.getUserAgent());
+                    case SESSION_ID -> writeString(out, event.getSessionId());
+                    case ACTOR_USERNAME -> writeString(out, event.getActorUsername());
+                    default -> throw new IllegalArgumentException("Unknown column: " + column);
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeDictionaryColumn(List<AuditEvent> events, int column) throws IOException {
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        int[] codes = new int[events.size()];
+        for (int row = 0; row < codes.length; row++) {
+            String value = stringValue(events.get(row), column);
+            codes[row] = value == null ? NULL_CODE : dictionary.computeIfAbsent(value, v -> dictionary.size());
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            out.writeInt(dictionary.size());
+            for (String value : dictionary.keySet()) {
+                writeString(out, value);
+            }
+            for (int code : codes) {
+                out.writeInt(code);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String stringValue(AuditEvent event, int column) {
+        return switch (column) {
+            case EVENT_TYPE -> event.getEventType();
+            case USERNAME -> event.getUsername();
+            case CONTENT_TYPE -> event.getContentType();
+            case IP_ADDRESS -> event.getIpAddress();
+            case USER_AGENT -> event.getUserAgent();
+            case SESSION_ID -> event.getSessionId();
+            case ACTOR_USERNAME -> event.getActorUsername();
+            default -> throw new IllegalArgumentException("Not a dictionary column: " + column);
+        };
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,173 @@
+package com.lbg.markets.luxback.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.lbg.markets.luxback.config.LuxBackConfig;
+import com.lbg.markets.luxback.exception.StorageException;
+import com.lbg.markets.luxback.model.AuditEvent;
+import com.lbg.markets.luxback.service.AuditLogStore.FilenameSnapshot;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index from (username, stored filename) to original filename.
+ * Each user's entries are loaded from the filename snapshot kept by
+ * {@link AuditLogStore}, so resolving a download's display name never scans
+ * or parses the audit log. On a miss the entries are checked against the
+ * snapshot's generation and the user's segments, at most once per revalidate interval.
+ */
+@Service
+@Slf4j
+public class FilenameIndex {
+
+    private final AuditLogStore auditLog;
+    private final AuditWriteQueue writeQueue;
+    private final LuxBackConfig config;
+
+    // username -> entries, weighed by entry count
+    private final Cache<String, UserFilenames> byUser;
+
+    public FilenameIndex(AuditLogStore auditLog, AuditWriteQueue writeQueue, LuxBackConfig config) {
+        this.auditLog = auditLog;
+        this.writeQueue = writeQueue;
+        this.config = config;
+        this.byUser = Caffeine.newBuilder()
+                .maximumWeight(config.getAudit().getFilenameIndexMaxEntries())
+                .weigher((String username, UserFilenames entries) -> entries.filenames().size() + 1)
+                .executor(Runnable::run)
+                .build();
+    }
+
+    /**
+     * Look up the original filename of a stored file
+     */
+    public Optional<String> lookup(String username, String storedFilename) {
+        UserFilenames entries = entries(username);
+        String filename = entries.filenames().get(storedFilename);
+
+        // The upload may have been recorded by another instance since the entries were loaded
+        if (filename == null && entries.dueForCheck(config.getAudit().getRevalidateInterval().toMillis())) {
+            log.debug("Filename index miss, revalidating: user={}, file={}", username, storedFilename);
+            filename = revalidate(username, entries).filenames().get(storedFilename);
+        }
+        return Optional.ofNullable(filename);
+    }
+
+    /**
+     * Add a newly recorded upload to the index, if the user's entries are loaded
+     */
+    public void record(AuditEvent event) {
+        if (!"UPLOAD".equals(event.getEventType()) || event.getStoredAs() == null) {
+            return;
+        }
+        byUser.asMap().computeIfPresent(event.getUsername(), (u, entries) -> {
+            entries.filenames().putIfAbsent(event.getStoredAs(), event.getFilename());
+            return entries; // Returned so the cache re-weighs the user
+        });
+    }
+
+    private UserFilenames entries(String username) {
+        UserFilenames cached = byUser.getIfPresent(username);
+        if (cached != null) {
+            return cached;
+        }
+        // Load outside the cache: a slow read must not block other users' lookups
+        return install(username, load(username));
+    }
+
+    /**
+     * Load a user's entries from their snapshot, building it if it does not exist yet
+     */
+    private UserFilenames load(String username) {
+        // Snapshot queued events first: one written in between is then seen twice, never missed
+        List<AuditEvent> queued = writeQueue.pendingEvents(username);
+
+        UserFilenames entries;
+        try {
+            Optional<FilenameSnapshot> snapshot = auditLog.loadFilenameSnapshot(username);
+            entries = new UserFilenames(snapshot.isPresent() ? snapshot.get() : auditLog.rebuildFilenameSnapshot(username));
+        } catch (IOException e) {
+            log.error("Failed to load filename index for user: " + username, e);
+            entries = new UserFilenames(new FilenameSnapshot(Map.of(), FilenameSnapshot.NONE, List.of()));
+        }
+
+        AuditLogStore.uploadFilenames(queued).forEach(entries.filenames()::putIfAbsent);
+        log.debug("Loaded {} filename index entries for user: {}", entries.filenames().size(), username);
+        return entries;
+    }
+
+    /**
+     * Bring a user's entries up to date: read only new segments while the snapshot
+     * and the segments already read are unchanged, otherwise reload the user
+     */
+    private UserFilenames revalidate(String username, UserFilenames cached) {
+        UserFilenames fresh;
+        try {
+            long generation = auditLog.filenameSnapshotGeneration(username);
+            List<String> segments = auditLog.listSegments(username);
+
+            if (cached.source.coveredBy(generation, segments)) {
+                Set<String> known = new HashSet<>(cached.source.segments());
+                List<String> added = segments.stream().filter(segment -> !known.contains(segment)).toList();
+                if (added.isEmpty()) {
+                    cached.checked();
+                    return cached;
+                }
+                fresh = new UserFilenames(new FilenameSnapshot(cached.filenames(), generation, segments));
+                auditLog.readUploads(added).forEach(fresh.filenames()::putIfAbsent);
+            } else {
+                fresh = load(username);
+            }
+        } catch (StorageException e) {
+            log.warn("Could not revalidate filename index for user: " + username, e);
+            cached.checked();
+            return cached;
+        }
+        return install(username, fresh);
+    }
+
+    /**
+     * Put freshly read entries in the cache, keeping anything recorded while they were read
+     */
+    private UserFilenames install(String username, UserFilenames fresh) {
+        return byUser.asMap().merge(username, fresh, (current, loaded) -> {
+            current.filenames().forEach(loaded.filenames()::putIfAbsent);
+            return loaded;
+        });
+    }
+
+    /**
+     * One user's entries and the storage state they were read from
+     */
+    private static final class UserFilenames {
+
+        // Holds its own concurrent copy of the filenames, which record() adds to
+        private final FilenameSnapshot source;
+        private volatile long checkedAt = System.currentTimeMillis();
+
+        UserFilenames(FilenameSnapshot snapshot) {
+            this.source = new FilenameSnapshot(new ConcurrentHashMap<>(snapshot.filenames()),
+                    snapshot.generation(), snapshot.segments());
+        }
+
+        Map<String, String> filenames() {
+            return source.filenames();
+        }
+
+        boolean dueForCheck(long intervalMillis) {
+            return System.currentTimeMillis() - checkedAt >= intervalMillis;
+        }
+
+        void checked() {
+            checkedAt = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.lbg.markets.luxback.service;
+
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * Inverted trigram index over lower-cased event filenames.
+ * Each posting list holds the rows (see {@link AuditEventColumns}) whose
+ * filename contains the trigram, in ascending row order, so a substring query
+ * intersects the lists of the needle's trigrams and only verifies the
+ * surviving candidates. Lists are stored as varint-encoded gaps between rows,
+ * typically one or two bytes per entry.
+ * <p>
+ * Not thread-safe; the owning {@link UserAuditLog} serializes access.
+ */
+final class FilenameTrigramIndex {
+
+    private static final int GRAM = 3;
+
+    private final Map<String, Posting> postings = new HashMap<>();
+    private long postingBytes;
+
+    /**
+     * Rows containing one trigram, ascending, as varint-encoded gaps
+     */
+    private static final class Posting {
+        private byte[] data = new byte[4];
+        private int length;
+        private int size;
+        private int last;
+
+        /**
+         * @return bytes the encoded list grew by
+         */
+        int add(int row) {
+            int grownBy = 0;
+            if (length + 5 > data.length) {
+                grownBy = data.length;
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            int gap = row - last;
+            while ((gap & ~0x7F) != 0) {
+                data[length++] = (byte) ((gap & 0x7F) | 0x80);
+                gap >>>= 7;
+            }
+            data[length++] = (byte) gap;
+            last = row;
+            size++;
+            return grownBy;
+        }
+
+        Cursor cursor() {
+            return new Cursor(this);
+        }
+    }
+
+    /**
+     * Sequential reader over a posting list
+     */
+    private static final class Cursor {
+        private final Posting posting;
+        private int offset;
+        private int value;
+        private int read;
+
+        Cursor(Posting posting) {
+            this.posting = posting;
+        }
+
+        boolean hasNext() {
+            return read < posting.size;
+        }
+
+        /**
+         * Read the next row
+         */
+        int next() {
+            int gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = posting.data[offset++];
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            read++;
+            value += gap;
+            return value;
+        }
+
+        /**
+         * Advance to the first row at or after the target
+         *
+         * @return whether the list contains the target
+         */
+        boolean skipTo(int target) {
+            while (read == 0 || value < target) {
+                if (!hasNext()) {
+                    return false;
+                }
+                next();
+            }
+            return value == target;
+        }
+    }
+
+    /**
+     * Index a row; rows must be added in ascending order
+     */
+    void add(int row, String filename) {
+        if (filename == null) {
+            return;
+        }
+        for (String trigram : trigrams(normalize(filename))) {
+            Posting posting = postings.get(trigram);
+            if (posting == null) {
+                posting = new Posting();
+                postings.put(trigram, posting);
+                postingBytes += 112; // Entry, key, list and initial buffer
+            }
+            postingBytes += posting.add(row);
+        }
+    }
+
+    /**
+     * Find rows whose filename contains the needle, case-insensitively
+     *
+     * @param filenames the filename of a row
+     * @return matching rows in ascending order, or null if the needle is too short to use the index
+     */
+    int[] search(String needle, IntFunction<String> filenames) {
+        String normalized = normalize(needle);
+        Set<String> trigrams = trigrams(normalized);
+        if (trigrams.isEmpty()) {
+            return null;
+        }
+
+        List<Posting> lists = new ArrayList<>(trigrams.size());
+        for (String trigram : trigrams) {
+            Posting posting = postings.get(trigram);
+            if (posting == null) {
+                return new int[0];
+            }
+            lists.add(posting);
+        }
+        lists.sort(Comparator.comparingInt(posting -> posting.size));
+
+        // Drive from the rarest trigram, skipping through the others in step
+        Cursor rarest = lists.get(0).cursor();
+        List<Cursor> others = lists.subList(1, lists.size()).stream().map(Posting::cursor).toList();
+
+        int[] matches = new int[lists.get(0).size];
+        int count = 0;
+        while (rarest.hasNext()) {
+            int candidate = rarest.next();
+            boolean inAll = true;
+            for (int j = 0; j < others.size() && inAll; j++) {
+                inAll = others.get(j).skipTo(candidate);
+            }
+            // Trigrams can match out of sequence, so confirm the substring itself
+            if (inAll && normalize(filenames.apply(candidate)).contains(normalized)) {
+                matches[count++] = candidate;
+            }
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    /**
+     * Approximate heap retained by the posting lists
+     */
+    long estimatedBytes() {
+        return postingBytes;
+    }
+
+    private static String normalize(String filename) {
+        return filename.toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<String> trigrams(String text) {
+        Set<String> trigrams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            trigrams.add(text.substring(i, i + GRAM));
+        }
+        return trigrams;
+    }
+}
@@ -1,7 +1,10 @@
 package com.lbg.markets.luxback.service;
 
+import com.google.cloud.BaseServiceException;
+import com.google.cloud.ReadChannel;
 import com.google.cloud.storage.*;
 import com.lbg.markets.luxback.exception.StorageException;
+import com.lbg.markets.luxback.model.ObjectStat;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Profile;
@@ -9,10 +12,16 @@ import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
+import java.io.Reader;
 import java.nio.channels.Channels;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Google Cloud Storage implementation of StorageService.
@@ -24,6 +33,13 @@ import java.util.List;
 @Slf4j
 public class GcsStorageService implements StorageService {
 
+    private static final int NOT_FOUND = 404;
+
+    // HTTP status GCS returns when an ifGenerationMatch / doesNotExist precondition fails
+    private static final int PRECONDITION_FAILED = 412;
+
+    private static final int MAX_APPEND_ATTEMPTS = 5;
+
     private final Storage storage = StorageOptions.getDefaultInstance().getService();
 
     /**
@@ -70,14 +86,40 @@ public class GcsStorageService implements StorageService {
 
     @Override
     public InputStream readFile(String path) {
+        return open(storage.reader(parsePath(path)), path);
+    }
+
+    @Override
+    public Optional<StoredFile> open(String path) {
         BlobId blobId = parsePath(path);
-        Blob blob = storage.get(blobId);
+        Blob blob;
+        try {
+            blob = storage.get(blobId, Storage.BlobGetOption.fields(Storage.BlobField.SIZE,
+                    Storage.BlobField.GENERATION, Storage.BlobField.UPDATED, Storage.BlobField.CONTENT_TYPE));
+        } catch (com.google.cloud.storage.StorageException e) {
+            throw new StorageException("Failed to open GCS object: " + path, e);
+        }
+        return blob == null ? Optional.empty() : Optional.of(new GcsStoredFile(toStat(path, blob), blobId));
+    }
 
-        if (blob == null || !blob.exists()) {
-            throw new StorageException("File not found in GCS: " + path);
+    @Override
+    public InputStream readRange(String path, long offset, long length) {
+        ReadChannel reader = storage.reader(parsePath(path));
+        try {
+            // Ranged GET: only the requested bytes are transferred
+            reader.seek(offset);
+            reader.limit(offset + length);
+        } catch (IOException e) {
+            reader.close();
+            throw new StorageException("Failed to read range of GCS object: " + path, e);
         }
+        return open(reader, path);
+    }
 
-        return Channels.newInputStream(blob.reader());
+    @Override
+    public Reader openReader(String path) {
+        // Decode as the object streams in rather than buffering it as a byte[]
+        return new InputStreamReader(readFile(path), StandardCharsets.UTF_8);
     }
 
     @Override
@@ -93,32 +135,209 @@ public class GcsStorageService implements StorageService {
 
     @Override
     public String readString(String path) {
-        BlobId blobId = parsePath(path);
-        Blob blob = storage.get(blobId);
-
-        if (blob == null || !blob.exists()) {
-            throw new StorageException("File not found in GCS: " + path);
+        try {
+            return new String(storage.readAllBytes(parsePath(path)), StandardCharsets.UTF_8);
+        } catch (com.google.cloud.storage.StorageException e) {
+            throw notFoundOrFailed(path, e);
         }
+    }
 
-        byte[] content = blob.getContent();
-        return new String(content, StandardCharsets.UTF_8);
+    @Override
+    public Optional<ObjectStat> writeStringIfAbsent(String path, String content) {
+        BlobInfo blobInfo = BlobInfo.newBuilder(parsePath(path)).build();
+        try {
+            Blob blob = storage.create(blobInfo, content.getBytes(StandardCharsets.UTF_8),
+                    Storage.BlobTargetOption.doesNotExist());
+            log.debug("Created GCS object: {}", path);
+            return Optional.of(toStat(path, blob));
+        } catch (com.google.cloud.storage.StorageException e) {
+            if (e.getCode() == PRECONDITION_FAILED) {
+                return Optional.empty();
+            }
+            throw new StorageException("Failed to create GCS object: " + path, e);
+        }
     }
 
     @Override
     public void append(String path, String content) {
-        // GCS doesn't support true append - read, modify, write
-        String existing = "";
-        if (exists(path)) {
-            existing = readString(path);
+        // GCS objects are immutable: upload the content as a temporary object and compose it
+        // onto the target. The compose is conditional on the target's generation, so an
+        // append racing with another instance is retried rather than overwriting it.
+        BlobId target = parsePath(path);
+        String deltaPath = path + "." + UUID.randomUUID() + ".append";
+        storage.create(BlobInfo.newBuilder(parsePath(deltaPath)).build(), content.getBytes(StandardCharsets.UTF_8));
+
+        try {
+            for (int attempt = 1; ; attempt++) {
+                Optional<ObjectStat> current = stat(path);
+                boolean appended = current.isEmpty()
+                        ? writeStringIfAbsent(path, content).isPresent()
+                        : composeIfUnchanged(List.of(path, deltaPath), path, current.get().getGeneration()).isPresent();
+                if (appended) {
+                    log.debug("Appended to GCS object: {} (attempt {})", path, attempt);
+                    return;
+                }
+                if (attempt == MAX_APPEND_ATTEMPTS) {
+                    throw new StorageException("Gave up appending to GCS object after concurrent updates: " + path);
+                }
+                // Brief, jittered pause so competing writers fall out of step
+                Thread.sleep(ThreadLocalRandom.current().nextLong(1, 10L << attempt));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageException("Interrupted while appending to GCS object: " + path, e);
+        } finally {
+            storage.delete(parsePath(deltaPath));
+        }
+    }
+
+    @Override
+    public Optional<ObjectStat> stat(String path) {
+        Blob blob;
+        try {
+            // Only the fields we need, so the response stays small
+            blob = storage.get(parsePath(path), Storage.BlobGetOption.fields(Storage.BlobField.SIZE,
+                    Storage.BlobField.GENERATION, Storage.BlobField.UPDATED, Storage.BlobField.CONTENT_TYPE));
+        } catch (com.google.cloud.storage.StorageException e) {
+            throw new StorageException("Failed to stat GCS object: " + path, e);
+        }
+        return blob == null ? Optional.empty() : Optional.of(toStat(path, blob));
+    }
+
+    private static ObjectStat toStat(String path, Blob blob) {
+        return ObjectStat.builder()
+                .path(path)
+                .size(blob.getSize() == null ? 0 : blob.getSize())
+                .generation(blob.getGeneration() == null ? 0 : blob.getGeneration())
+                .updated(blob.getUpdateTimeOffsetDateTime() == null ? null
+                        : blob.getUpdateTimeOffsetDateTime().toInstant())
+                .contentType(blob.getContentType())
+                .build();
+    }
+
+    /**
+     * Stream an object with a single request. The first chunk is fetched straight
+     * away, so a missing object fails here, as a StorageException, rather than on
+     * the caller's first read - without a separate metadata lookup beforehand.
+     */
+    private InputStream open(ReadChannel reader, String path) {
+        PushbackInputStream in = new PushbackInputStream(Channels.newInputStream(reader), 1);
+        try {
+            int first = in.read();
+            if (first >= 0) {
+                in.unread(first);
+            }
+            return in;
+        } catch (IOException | com.google.cloud.storage.StorageException e) {
+            reader.close();
+            throw notFoundOrFailed(path, e);
+        }
+    }
+
+    /**
+     * An object looked up by {@link #open}; nothing is held open until it is streamed
+     */
+    private final class GcsStoredFile implements StoredFile {
+        private final ObjectStat stat;
+        private final BlobId blobId;
+
+        GcsStoredFile(ObjectStat stat, BlobId blobId) {
+            this.stat = stat;
+            this.blobId = blobId;
+        }
+
+        @Override
+        public ObjectStat stat() {
+            return stat;
+        }
+
+        @Override
+        public InputStream openStream(long offset, long length) throws IOException {
+            // Read the generation that was looked up, so the content matches the metadata
+            BlobId generation = BlobId.of(blobId.getBucket(), blobId.getName(), stat.getGeneration());
+            ReadChannel reader = storage.reader(generation);
+            if (offset > 0 || length < stat.getSize()) {
+                reader.seek(offset);
+                reader.limit(offset + length);
+            }
+            return Channels.newInputStream(reader);
+        }
+    }
+
+    private static StorageException notFoundOrFailed(String path, Exception e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof BaseServiceException serviceException && serviceException.getCode() == NOT_FOUND) {
+                return new StorageException("File not found in GCS: " + path, e);
+            }
+        }
+        return new StorageException("Failed to read file from GCS: " + path, e);
+    }
+
+    @Override
+    public void compose(List<String> sources, String target) {
+        BlobId targetId = parsePath(target);
+        Storage.ComposeRequest.Builder request = Storage.ComposeRequest.newBuilder()
+                .setTarget(BlobInfo.newBuilder(targetId).build());
+
+        for (String source : sources) {
+            BlobId sourceId = parsePath(source);
+            if (!sourceId.getBucket().equals(targetId.getBucket())) {
+                throw new IllegalArgumentException("GCS compose sources must be in the target bucket: " + source);
+            }
+            request.addSource(sourceId.getName());
+        }
+
+        try {
+            // Server-side concatenation - no object bytes pass through this instance
+            storage.compose(request.build());
+        } catch (com.google.cloud.storage.StorageException e) {
+            throw new StorageException("Failed to compose GCS object: " + target, e);
+        }
+
+        log.debug("Composed {} objects into GCS: {}", sources.size(), target);
+    }
+
+    @Override
+    public Optional<ObjectStat> composeIfUnchanged(List<String> sources, String target, long expectedGeneration) {
+        BlobId targetId = parsePath(target);
+        Storage.ComposeRequest.Builder request = Storage.ComposeRequest.newBuilder()
+                .setTarget(BlobInfo.newBuilder(targetId).build())
+                .setTargetOptions(Storage.BlobTargetOption.generationMatch(expectedGeneration));
+
+        for (String source : sources) {
+            BlobId sourceId = parsePath(source);
+            if (!sourceId.getBucket().equals(targetId.getBucket())) {
+                throw new IllegalArgumentException("GCS compose sources must be in the target bucket: " + source);
+            }
+            request.addSource(sourceId.getName());
+        }
+
+        try {
+            Blob composed = storage.compose(request.build());
+            log.debug("Composed {} objects into GCS: {} (generation {})", sources.size(), target, composed.getGeneration());
+            return Optional.of(toStat(target, composed));
+        } catch (com.google.cloud.storage.StorageException e) {
+            if (e.getCode() == PRECONDITION_FAILED) {
+                log.debug("GCS object changed since generation {}, not composing: {}", expectedGeneration, target);
+                return Optional.empty();
+            }
+            throw new StorageException("Failed to compose GCS object: " + target, e);
+        }
+    }
+
+    @Override
+    public boolean delete(String path) {
+        try {
+            return storage.delete(parsePath(path));
+        } catch (com.google.cloud.storage.StorageException e) {
+            throw new StorageException("Failed to delete GCS object: " + path, e);
         }
-        writeString(path, existing + content);
     }
 
     @Override
     public boolean exists(String path) {
-        BlobId blobId = parsePath(path);
-        Blob blob = storage.get(blobId);
-        return blob != null && blob.exists();
+        // get() returns null for a missing object; Blob.exists() would be a second request
+        return storage.get(parsePath(path), Storage.BlobGetOption.fields(Storage.BlobField.NAME)) != null;
     }
 
     @Override
@@ -149,4 +368,18 @@ public class GcsStorageService implements StorageService {
 
         return files;
     }
+
+    @Override
+    public List<String> listDirectory(String directory) {
+        BlobId dir = parsePath(directory);
+        String blobPrefix = dir.getName().isEmpty() || dir.getName().endsWith("/") ? dir.getName() : dir.getName() + "/";
+
+        // With currentDirectory(), deeper objects come back once per common prefix (name ending in '/')
+        List<String> entries = new ArrayList<>();
+        for (Blob blob : storage.list(dir.getBucket(), Storage.BlobListOption.prefix(blobPrefix),
+                Storage.BlobListOption.currentDirectory()).iterateAll()) {
+            entries.add("gs://" + dir.getBucket() + "/" + blob.getName());
+        }
+        return entries;
+    }
 }
@@ -1,19 +1,30 @@
 package com.lbg.markets.luxback.service;
 
 import com.lbg.markets.luxback.exception.StorageException;
+import com.lbg.markets.luxback.model.ObjectStat;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
 /**
@@ -50,6 +61,51 @@ public class LocalStorageService implements StorageService {
         }
     }
 
+    @Override
+    public Optional<StoredFile> open(String path) {
+        try {
+            Path filePath = Paths.get(path);
+            FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ);
+            Optional<ObjectStat> stat = stat(path);
+            if (stat.isEmpty()) {
+                channel.close();
+                return Optional.empty();
+            }
+            return Optional.of(new LocalStoredFile(stat.get(), filePath, channel));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new StorageException("Failed to open file: " + path, e);
+        }
+    }
+
+    @Override
+    public InputStream readRange(String path, long offset, long length) {
+        try {
+            Path filePath = Paths.get(path);
+            if (!Files.exists(filePath)) {
+                throw new StorageException("File not found: " + path);
+            }
+            FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ);
+            return new ChannelRangeInputStream(channel, offset, length, true);
+        } catch (IOException e) {
+            throw new StorageException("Failed to read file: " + path, e);
+        }
+    }
+
+    @Override
+    public Reader openReader(String path) {
+        try {
+            Path filePath = Paths.get(path);
+            if (!Files.exists(filePath)) {
+                throw new StorageException("File not found: " + path);
+            }
+            return Files.newBufferedReader(filePath, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new StorageException("Failed to read file: " + path, e);
+        }
+    }
+
     @Override
     public void writeString(String path, String content) {
         try {
@@ -62,6 +118,21 @@ public class LocalStorageService implements StorageService {
         }
     }
 
+    @Override
+    public Optional<ObjectStat> writeStringIfAbsent(String path, String content) {
+        try {
+            Path filePath = Paths.get(path);
+            Files.createDirectories(filePath.getParent());
+            Files.writeString(filePath, content, StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW);
+            log.debug("Created file in local storage: {}", path);
+            return stat(path);
+        } catch (FileAlreadyExistsException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new StorageException("Failed to write string: " + path, e);
+        }
+    }
+
     @Override
     public String readString(String path) {
         try {
@@ -88,6 +159,79 @@ public class LocalStorageService implements StorageService {
         }
     }
 
+    @Override
+    public Optional<ObjectStat> stat(String path) {
+        try {
+            Path filePath = Paths.get(path);
+            BasicFileAttributes attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+            return Optional.of(ObjectStat.builder()
+                    .path(path)
+                    .size(attributes.size())
+                    .generation(attributes.lastModifiedTime().to(TimeUnit.MICROSECONDS))
+                    .updated(attributes.lastModifiedTime().toInstant())
+                    .contentType(Files.probeContentType(filePath))
+                    .build());
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new StorageException("Failed to stat file: " + path, e);
+        }
+    }
+
+    @Override
+    public void compose(List<String> sources, String target) {
+        try {
+            Path targetPath = Paths.get(target);
+            Files.createDirectories(targetPath.getParent());
+
+            // Build into a temp file alongside the target so the swap is atomic
+            Path tempPath = Files.createTempFile(targetPath.getParent(), ".compose-", ".tmp");
+            try (OutputStream out = Files.newOutputStream(tempPath)) {
+                for (String source : sources) {
+                    Path sourcePath = Paths.get(source);
+                    if (!Files.exists(sourcePath)) {
+                        throw new StorageException("File not found: " + source);
+                    }
+                    Files.copy(sourcePath, out);
+                }
+            } catch (IOException | StorageException e) {
+                Files.deleteIfExists(tempPath);
+                throw e;
+            }
+
+            Files.move(tempPath, targetPath,
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Composed {} files into: {}", sources.size(), target);
+        } catch (IOException e) {
+            throw new StorageException("Failed to compose file: " + target, e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * The generation check and compose are atomic within this process only.
+     */
+    @Override
+    public synchronized Optional<ObjectStat> composeIfUnchanged(List<String> sources, String target,
+                                                                long expectedGeneration) {
+        Optional<ObjectStat> current = stat(target);
+        if (current.isEmpty() || current.get().getGeneration() != expectedGeneration) {
+            log.debug("File changed since generation {}, not composing: {}", expectedGeneration, target);
+            return Optional.empty();
+        }
+        compose(sources, target);
+        return stat(target);
+    }
+
+    @Override
+    public boolean delete(String path) {
+        try {
+            return Files.deleteIfExists(Paths.get(path));
+        } catch (IOException e) {
+            throw new StorageException("Failed to delete file: " + path, e);
+        }
+    }
+
     @Override
     public boolean exists(String path) {
         return Files.exists(Paths.get(path));
@@ -111,4 +255,100 @@ public class LocalStorageService implements StorageService {
             throw new StorageException("Failed to list files with prefix: " + prefix, e);
         }
     }
+
+    @Override
+    public List<String> listDirectory(String directory) {
+        try {
+            Path dirPath = Paths.get(directory);
+            if (!Files.isDirectory(dirPath)) {
+                return new ArrayList<>();
+            }
+
+            try (Stream<Path> paths = Files.list(dirPath)) {
+                return paths
+                        .map(path -> Files.isDirectory(path) ? path + "/" : path.toString())
+                        .toList();
+            }
+        } catch (IOException e) {
+            throw new StorageException("Failed to list directory: " + directory, e);
+        }
+    }
+
+    /**
+     * A file opened by {@link #open}, holding its channel until streamed or closed
+     */
+    private record LocalStoredFile(ObjectStat stat, Path path, FileChannel channel) implements StoredFile {
+
+        @Override
+        public InputStream openStream(long offset, long length) {
+            return new ChannelRangeInputStream(channel, offset, length, false);
+        }
+
+        @Override
+        public Optional<Path> localPath() {
+            return Optional.of(path);
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.debug("Failed to close file: {}", stat.getPath(), e);
+            }
+        }
+    }
+
+    /**
+     * Stream over a byte range of a channel. Uses positional reads, so several
+     * ranges can be streamed from one channel without affecting each other.
+     */
+    private static final class ChannelRangeInputStream extends InputStream {
+        private final FileChannel channel;
+        private final long end;
+        private final boolean closeChannel;
+        private long position;
+
+        ChannelRangeInputStream(FileChannel channel, long offset, long length, boolean closeChannel) {
+            this.channel = channel;
+            this.position = offset;
+            this.end = offset + length;
+            this.closeChannel = closeChannel;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (position >= end) {
+                return -1;
+            }
+            int read = channel.read(ByteBuffer.wrap(buffer, offset, (int) Math.min(length, end - position)), position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = Math.max(0, Math.min(n, Math.min(end, channel.size()) - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closeChannel) {
+                channel.close();
+            }
+        }
+    }
 }
@@ -1,7 +1,11 @@
 package com.lbg.markets.luxback.service;
 
+import com.lbg.markets.luxback.model.ObjectStat;
+
 import java.io.InputStream;
+import java.io.Reader;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Abstraction for storage operations.
@@ -26,6 +30,34 @@ public interface StorageService {
      */
     InputStream readFile(String path);
 
+    /**
+     * Open a file for streaming with a single metadata lookup.
+     * The returned handle is streamed without another existence or readability check.
+     *
+     * @param path the storage path
+     * @return the opened file, or empty if it does not exist
+     */
+    Optional<StoredFile> open(String path);
+
+    /**
+     * Read part of a file as an input stream, without fetching the bytes before the range
+     *
+     * @param path   the storage path
+     * @param offset position of the first byte to read
+     * @param length maximum number of bytes to read
+     * @return input stream over the range; shorter if the file ends first. The caller must close it
+     */
+    InputStream readRange(String path, long offset, long length);
+
+    /**
+     * Open a file for streaming reads as UTF-8 text.
+     * Unlike {@link #readString(String)} the contents are never held in memory at once.
+     *
+     * @param path the storage path
+     * @return reader over the file contents; the caller must close it
+     */
+    Reader openReader(String path);
+
     /**
      * Write a string to a file
      *
@@ -34,6 +66,16 @@ public interface StorageService {
      */
     void writeString(String path, String content);
 
+    /**
+     * Write a string to a file only if the file does not exist yet, atomically
+     * with respect to other writers
+     *
+     * @param path    the storage path
+     * @param content the string content
+     * @return the new file's metadata, or empty if the file already existed
+     */
+    Optional<ObjectStat> writeStringIfAbsent(String path, String content);
+
     /**
      * Read a file as a string
      *
@@ -58,6 +100,46 @@ public interface StorageService {
      */
     boolean exists(String path);
 
+    /**
+     * Fetch a file's size and version without reading its content.
+     * One metadata request on GCS, so it is much cheaper than re-reading the file.
+     *
+     * @param path the storage path
+     * @return the file's metadata, or empty if it does not exist
+     */
+    Optional<ObjectStat> stat(String path);
+
+    /**
+     * Concatenate source objects, in order, into the target object.
+     * The target may also appear as the first source, in which case the
+     * remaining sources are effectively appended to it.
+     *
+     * @param sources the source paths, in concatenation order
+     * @param target  the target path
+     */
+    void compose(List<String> sources, String target);
+
+    /**
+     * Concatenate source objects into the target, as {@link #compose}, but only if
+     * the target is still at the given generation, i.e. nobody has replaced it since
+     * it was read. Lets writers on different instances update the same object
+     * without a shared lock.
+     *
+     * @param sources            the source paths, in concatenation order
+     * @param target             the target path
+     * @param expectedGeneration the target's generation from {@link #stat}
+     * @return the composed target's metadata, or empty if the target had changed
+     */
+    Optional<ObjectStat> composeIfUnchanged(List<String> sources, String target, long expectedGeneration);
+
+    /**
+     * Delete a file if it exists
+     *
+     * @param path the storage path
+     * @return true if a file was deleted
+     */
+    boolean delete(String path);
+
     /**
      * List files with a given prefix
      *
@@ -65,4 +147,13 @@ public interface StorageService {
      * @return list of file paths
      */
     List<String> listFiles(String prefix);
+
+    /**
+     * List the entries directly under a directory, without descending into it.
+     * Subdirectories (on GCS, common prefixes) are returned once each, with a trailing '/'.
+     *
+     * @param directory the directory path
+     * @return list of file and subdirectory paths
+     */
+    List<String> listDirectory(String directory);
 }
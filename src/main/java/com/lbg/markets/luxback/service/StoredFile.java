@@ -0,0 +1,65 @@
+package com.lbg.markets.luxback.service;
+
+import com.lbg.markets.luxback.model.ObjectStat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * A file opened for reading by {@link StorageService#open(String)}.
+ * Its metadata has been fetched and it is known to exist, so it can be
+ * streamed without looking it up again. Close it if it is never streamed.
+ */
+public interface StoredFile extends AutoCloseable {
+
+    /**
+     * Metadata fetched when the file was opened
+     */
+    ObjectStat stat();
+
+    /**
+     * Stream the file's content, as it was when opened where the backend allows
+     */
+    default InputStream openStream() throws IOException {
+        return openStream(0, stat().getSize());
+    }
+
+    /**
+     * Stream a byte range of the file's content, fetching only that range.
+     * A handle can stream several ranges; close the handle when done with all of them.
+     *
+     * @param offset position of the first byte
+     * @param length number of bytes
+     */
+    InputStream openStream(long offset, long length) throws IOException;
+
+    /**
+     * Write a byte range of the file's content to a stream
+     *
+     * @param offset position of the first byte
+     * @param length number of bytes
+     */
+    default void transferTo(long offset, long length, OutputStream out) throws IOException {
+        try (InputStream in = openStream(offset, length)) {
+            in.transferTo(out);
+        }
+    }
+
+    /**
+     * The file on the local filesystem, if it is one, so the web server can send
+     * it directly (sendfile) instead of it being streamed through the application
+     */
+    default Optional<Path> localPath() {
+        return Optional.empty();
+    }
+
+    /**
+     * Release the handle without streaming it
+     */
+    @Override
+    default void close() {
+    }
+}
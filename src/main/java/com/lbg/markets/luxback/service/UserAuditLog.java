@@ -0,0 +1,284 @@
+package com.lbg.markets.luxback.service;
+
+import com.lbg.markets.luxback.model.AuditEvent;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cached audit events for one user, ordered by timestamp then event ID (oldest first).
+ * Events are also kept in a separate list per event type, so type-filtered
+ * searches never visit events of other types, and a trigram index over
+ * filenames answers substring searches without scanning every event.
+ * <p>
+ * Events are packed into {@link AuditEventColumns} rather than held as objects;
+ * the ordered lists are arrays of row numbers. Readers get {@link EventRows},
+ * which filter and compare on the columns and materialize an {@link AuditEvent}
+ * only for the rows they return.
+ * <p>
+ * Appends are amortized O(1) and never copy the existing history; readers
+ * get an immutable snapshot without locking. Slots past a snapshot's size
+ * may be filled by later appends but are never visible through it.
+ */
+final class UserAuditLog {
+
+    static final Comparator<AuditEvent> ORDER = Comparator.comparing(AuditEvent::getTimestamp)
+            .thenComparing(AuditEvent::getEventId);
+
+    private static final Snapshot EMPTY = new Snapshot(null, new int[0], 0);
+
+    /**
+     * Published state: the columns, and the rows visible through them in order
+     */
+    private record Snapshot(AuditEventColumns.Block block, int[] rows, int size) {
+    }
+
+    // Guarded by this
+    private final AuditEventColumns columns;
+
+    private volatile Snapshot all;
+
+    // Event type -> rows of that type, in the same order (written under this)
+    private final Map<String, Snapshot> byType = new ConcurrentHashMap<>();
+
+    // Guarded by this
+    private final FilenameTrigramIndex filenames = new FilenameTrigramIndex();
+
+    // Storage version the events are known to cover, and when (System.nanoTime) that was last checked
+    private volatile AuditLogStore.LogVersion version;
+    private volatile long validatedAt;
+
+    private UserAuditLog(List<AuditEvent> sorted) {
+        columns = new AuditEventColumns(sorted.size());
+        int[] rows = new int[sorted.size()];
+
+        Map<String, int[]> grouped = new HashMap<>();
+        Map<String, Integer> groupSizes = new HashMap<>();
+        for (AuditEvent event : sorted) {
+            int row = columns.append(event);
+            rows[row] = row;
+            filenames.add(row, event.getFilename());
+
+            String type = typeOf(event);
+            int typed = groupSizes.merge(type, 1, Integer::sum) - 1;
+            int[] typeRows = grouped.computeIfAbsent(type, k -> new int[16]);
+            if (typed == typeRows.length) {
+                typeRows = Arrays.copyOf(typeRows, typed * 2);
+                grouped.put(type, typeRows);
+            }
+            typeRows[typed] = row;
+        }
+
+        AuditEventColumns.Block block = columns.block();
+        this.all = new Snapshot(block, rows, rows.length);
+        grouped.forEach((type, typeRows) ->
+                byType.put(type, new Snapshot(block, typeRows, groupSizes.get(type))));
+    }
+
+    /**
+     * Create a log from events loaded from storage
+     */
+    static UserAuditLog of(List<AuditEvent> events) {
+        List<AuditEvent> sorted = new ArrayList<>(events);
+        sorted.sort(ORDER);
+        return new UserAuditLog(sorted);
+    }
+
+    /**
+     * Append a newly recorded event.
+     * Events already present (same event ID) are ignored, so an event seen by a
+     * concurrent load is not added twice.
+     */
+    synchronized void append(AuditEvent event) {
+        Snapshot current = all;
+        int insertAt = insertionPoint(current, event);
+        if (insertAt < 0) {
+            return;
+        }
+
+        int row = columns.append(event);
+        AuditEventColumns.Block block = columns.block();
+        all = insert(current, block, insertAt, row);
+
+        Snapshot typed = byType.getOrDefault(typeOf(event), EMPTY);
+        byType.put(typeOf(event), insert(typed, block, insertionPoint(typed, event), row));
+        filenames.add(row, event.getFilename());
+    }
+
+    /**
+     * Immutable view of the events of one type at the time of the call, oldest first
+     *
+     * @param eventType the event type, or null for all events
+     */
+    EventRows rows(String eventType) {
+        Snapshot snapshot = eventType == null ? all : byType.getOrDefault(eventType, EMPTY);
+        return new EventRows(snapshot.block(), snapshot.rows(), 0, snapshot.size(), false);
+    }
+
+    /**
+     * Events whose filename contains the needle (case-insensitive), oldest first
+     *
+     * @param eventType the event type, or null for all events
+     * @return the matches, or null if the needle is too short for the filename index
+     */
+    synchronized EventRows searchFilename(String needle, String eventType) {
+        AuditEventColumns.Block block = columns.block();
+        int[] matches = filenames.search(needle, block::filename);
+        if (matches == null) {
+            return null;
+        }
+
+        int typeCode = columns.codeOf(eventType);
+        int[] rows = Arrays.stream(matches)
+                .filter(row -> eventType == null || block.code(AuditEventColumns.EVENT_TYPE, row) == typeCode)
+                .boxed()
+                .sorted(block::compare)
+                .mapToInt(Integer::intValue)
+                .toArray();
+        return new EventRows(block, rows, 0, rows.length, true);
+    }
+
+    int size() {
+        return all.size();
+    }
+
+    /**
+     * The storage version the events cover, or null if unknown (e.g. the load failed)
+     */
+    AuditLogStore.LogVersion version() {
+        return version;
+    }
+
+    /**
+     * Record that the events cover the given storage version, as of now
+     */
+    void validated(AuditLogStore.LogVersion version) {
+        this.version = version;
+        this.validatedAt = System.nanoTime();
+    }
+
+    /**
+     * Whether the version was confirmed against storage within the given interval
+     */
+    boolean validatedWithin(Duration interval) {
+        return version != null && System.nanoTime() - validatedAt < interval.toNanos();
+    }
+
+    /**
+     * Approximate heap retained by this log, including its per-type lists and filename index
+     */
+    synchronized long estimatedBytes() {
+        long rowLists = 4L * all.rows().length;
+        for (Snapshot typed : byType.values()) {
+            rowLists += 4L * typed.rows().length;
+        }
+        return columns.estimatedBytes() + rowLists + filenames.estimatedBytes();
+    }
+
+    /**
+     * Position at which an event belongs in a snapshot
+     *
+     * @return the index, or -1 if the event is already present
+     */
+    private static int insertionPoint(Snapshot snapshot, AuditEvent event) {
+        int[] rows = snapshot.rows();
+
+        // New events are almost always the latest; walk back over any that sort after it
+        int insertAt = snapshot.size();
+        while (insertAt > 0 && snapshot.block().compare(rows[insertAt - 1], event) > 0) {
+            insertAt--;
+        }
+        // A duplicate compares equal, so it can only sit just before the insertion point
+        for (int i = insertAt - 1; i >= 0 && snapshot.block().sameInstant(rows[i], event); i--) {
+            if (snapshot.block().eventId(rows[i]).equals(event.getEventId())) {
+                return -1;
+            }
+        }
+        return insertAt;
+    }
+
+    /**
+     * Insert a row into a snapshot's row list
+     */
+    private static Snapshot insert(Snapshot current, AuditEventColumns.Block block, int insertAt, int row) {
+        int[] rows = current.rows();
+        int size = current.size();
+
+        if (insertAt == size && size < rows.length) {
+            // Slot is beyond every published snapshot, so it can be written in place
+            rows[size] = row;
+            return new Snapshot(block, rows, size + 1);
+        }
+
+        // Out-of-order insert or full array: copy so published snapshots stay unchanged
+        int[] grown = new int[Math.max(16, size + (size >> 1) + 1)];
+        System.arraycopy(rows, 0, grown, 0, insertAt);
+        grown[insertAt] = row;
+        System.arraycopy(rows, insertAt, grown, insertAt + 1, size - insertAt);
+        return new Snapshot(block, grown, size + 1);
+    }
+
+    private static String typeOf(AuditEvent event) {
+        return event.getEventType() == null ? "" : event.getEventType();
+    }
+
+    /**
+     * Ordered run of rows, read straight from the columns. Indexes are positions
+     * in the run, oldest first; nothing is materialized until {@link #event(int)}.
+     * {@code filenameMatched} is set when the filename index has already checked
+     * every row against the searched filename.
+     */
+    record EventRows(AuditEventColumns.Block block, int[] rows, int from, int to, boolean filenameMatched) {
+
+        int size() {
+            return to - from;
+        }
+
+        AuditEvent event(int index) {
+            return block.event(row(index));
+        }
+
+        long epochDay(int index) {
+            return block.epochDay(row(index));
+        }
+
+        String eventType(int index) {
+            return block.eventType(row(index));
+        }
+
+        String username(int index) {
+            return block.username(row(index));
+        }
+
+        String filename(int index) {
+            return block.filename(row(index));
+        }
+
+        /**
+         * Compare a row with an event, such as a cursor position, in {@link #ORDER}
+         */
+        int compare(int index, AuditEvent event) {
+            return block.compare(row(index), event);
+        }
+
+        /**
+         * Compare rows of two runs, such as two users' logs, in {@link #ORDER}
+         */
+        static int compare(EventRows a, int indexA, EventRows b, int indexB) {
+            return AuditEventColumns.Block.compare(a.block, a.row(indexA), b.block, b.row(indexB));
+        }
+
+        /**
+         * The rows from one index up to (excluding) another
+         */
+        EventRows slice(int fromIndex, int toIndex) {
+            return new EventRows(block, rows, from + fromIndex, from + toIndex, filenameMatched);
+        }
+
+        private int row(int index) {
+            Objects.checkIndex(index, size());
+            return rows[from + index];
+        }
+    }
+}
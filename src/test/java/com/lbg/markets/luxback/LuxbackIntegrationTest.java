@@ -2,6 +2,7 @@ package com.lbg.markets.luxback;
 
 import com.lbg.markets.luxback.config.LuxBackConfig;
 import com.lbg.markets.luxback.service.AuditService;
+import com.lbg.markets.luxback.service.AuditWriteQueue;
 import com.lbg.markets.luxback.service.StorageService;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -15,6 +16,7 @@ import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -48,6 +50,9 @@ class LuxbackIntegrationTest {
     @Autowired
     private LuxBackConfig config;
 
+    @Autowired
+    private AuditWriteQueue auditWriteQueue;
+
     @BeforeEach
     void setUp() throws IOException {
         // Ensure directories exist before each test
@@ -82,6 +87,27 @@ class LuxbackIntegrationTest {
         }
     }
 
+    /**
+     * Read a user's full audit log: the compacted base file followed by any pending segments.
+     * Queued audit events are flushed first so the log is complete.
+     */
+    private String readAuditLog(String username) {
+        auditWriteQueue.flush();
+
+        StringBuilder auditCsv = new StringBuilder();
+
+        String basePath = config.getAuditIndexPath() + "/" + username + ".csv";
+        if (storageService.exists(basePath)) {
+            auditCsv.append(storageService.readString(basePath));
+        }
+
+        storageService.listFiles(config.getAuditIndexPath() + "/" + username).stream()
+                .sorted()
+                .forEach(segment -> auditCsv.append(storageService.readString(segment)));
+
+        return auditCsv.toString();
+    }
+
     @Test
     @WithMockUser(username = "testuser", roles = "USER")
     void fullUploadFlow_asUser() throws Exception {
@@ -102,7 +128,7 @@ class LuxbackIntegrationTest {
                 .andExpect(jsonPath("$.message").value("File uploaded successfully: test-document.pdf"));
 
         // Verify file was stored
-        String auditCsv = storageService.readString(config.getAuditIndexPath()+"/testuser.csv");
+        String auditCsv = readAuditLog("testuser");
         assertThat(auditCsv).contains("UPLOAD");
         assertThat(auditCsv).contains("test-document.pdf");
     }
@@ -132,7 +158,7 @@ class LuxbackIntegrationTest {
                 .andExpect(content().string(containsString("admin-report.xlsx")));
 
         // Step 3: Get the stored filename from audit
-        String auditCsv = storageService.readString(config.getAuditIndexPath()+"/admin.csv");
+        String auditCsv = readAuditLog("admin");
         String[] lines = auditCsv.split("\n");
         // Last line should be the upload event
         String lastLine = lines[lines.length - 1];
@@ -140,14 +166,19 @@ class LuxbackIntegrationTest {
         String storedFilename = fields[5]; // stored_as column
 
         // Step 4: Download the file
-        mockMvc.perform(get("/download/admin/" + storedFilename))
+        MvcResult download = mockMvc.perform(get("/download/admin/" + storedFilename))
                 .andExpect(status().isOk())
                 .andExpect(header().string("Content-Disposition",
                         containsString("admin-report.xlsx")))
-                .andExpect(content().bytes("Excel content for integration test".getBytes()));
+                .andReturn();
+
+        // Body is streamed asynchronously - wait for it before checking content
+        download.getAsyncResult();
+        assertThat(download.getResponse().getContentAsByteArray())
+                .isEqualTo("Excel content for integration test".getBytes());
 
         // Verify download was audited
-        auditCsv = storageService.readString(config.getAuditIndexPath()+"/admin.csv");
+        auditCsv = readAuditLog("admin");
         assertThat(auditCsv).contains("DOWNLOAD");
     }
 
@@ -179,11 +210,12 @@ class LuxbackIntegrationTest {
                 .andExpect(status().isOk());
 
         // Verify separate audit files were created
-        assertThat(storageService.exists(config.getAuditIndexPath()+"/user1.csv")).isTrue();
-        assertThat(storageService.exists(config.getAuditIndexPath()+"/user2.csv")).isTrue();
+        auditWriteQueue.flush();
+        assertThat(storageService.exists(config.getAuditIndexPath()+"/user1")).isTrue();
+        assertThat(storageService.exists(config.getAuditIndexPath()+"/user2")).isTrue();
 
-        String user1Audit = storageService.readString(config.getAuditIndexPath()+"/user1.csv");
-        String user2Audit = storageService.readString(config.getAuditIndexPath()+"/user2.csv");
+        String user1Audit = readAuditLog("user1");
+        String user2Audit = readAuditLog("user2");
 
         assertThat(user1Audit).contains("user1-doc.pdf");
         assertThat(user1Audit).doesNotContain("user2-doc.pdf");
@@ -322,7 +354,7 @@ class LuxbackIntegrationTest {
                 .andExpect(status().isOk());
 
         // Get stored filename from audit
-        String auditCsv = storageService.readString(config.getAuditIndexPath()+"/admin.csv");
+        String auditCsv = readAuditLog("admin");
         String[] lines = auditCsv.split("\n");
         String lastLine = lines[lines.length - 1];
         String[] fields = lastLine.split(",");
@@ -333,8 +365,8 @@ class LuxbackIntegrationTest {
                 .andExpect(status().isOk());
 
         // Verify both events are in audit
-        auditCsv = storageService.readString(config.getAuditIndexPath()+"/admin.csv");
-        assertThat(auditCsv.split("\n")).hasSizeGreaterThan(2); // Header + UPLOAD + DOWNLOAD
+        auditCsv = readAuditLog("admin");
+        assertThat(auditCsv.split("\n")).hasSizeGreaterThanOrEqualTo(2); // UPLOAD + DOWNLOAD segments
         assertThat(auditCsv).contains("UPLOAD");
         assertThat(auditCsv).contains("DOWNLOAD");
     }
@@ -2,8 +2,10 @@ package com.lbg.markets.luxback.controller;
 
 import com.lbg.markets.luxback.config.TestConfig;
 import com.lbg.markets.luxback.exception.StorageException;
+import com.lbg.markets.luxback.model.ObjectStat;
 import com.lbg.markets.luxback.service.AuditService;
 import com.lbg.markets.luxback.service.StorageService;
+import com.lbg.markets.luxback.service.StoredFile;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -12,10 +14,20 @@ import org.springframework.context.annotation.Import;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Optional;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -39,10 +51,76 @@ class DownloadControllerTest {
     @MockBean
     private AuditService auditService;
 
+    /**
+     * Perform a request and wait for any streamed response body to be written,
+     * so the stream cannot touch the shared mocks while a later test runs
+     */
+    private ResultActions performAndAwait(RequestBuilder request) throws Exception {
+        ResultActions result = mockMvc.perform(request);
+        MvcResult mvcResult = result.andReturn();
+        if (mvcResult.getRequest().isAsyncStarted()) {
+            mvcResult.getAsyncResult();
+        }
+        return result;
+    }
+
+    /**
+     * A stored file handle over a file on disk
+     */
+    private static StoredFile localFile(Path path, byte[] content) {
+        StoredFile inMemory = storedFile(content);
+        return new StoredFile() {
+            @Override
+            public ObjectStat stat() {
+                return inMemory.stat();
+            }
+
+            @Override
+            public InputStream openStream(long offset, long length) throws IOException {
+                return inMemory.openStream(offset, length);
+            }
+
+            @Override
+            public Optional<Path> localPath() {
+                return Optional.of(path);
+            }
+        };
+    }
+
+    /**
+     * A stored file handle over fixed content
+     */
+    private static StoredFile storedFile(byte[] content) {
+        return storedFile(content, null);
+    }
+
+    /**
+     * A stored file handle over fixed content, last modified at the given time
+     */
+    private static StoredFile storedFile(byte[] content, Instant updated) {
+        ObjectStat stat = ObjectStat.builder()
+                .path("test")
+                .size(content.length)
+                .generation(1)
+                .updated(updated)
+                .build();
+        return new StoredFile() {
+            @Override
+            public ObjectStat stat() {
+                return stat;
+            }
+
+            @Override
+            public InputStream openStream(long offset, long length) {
+                return new ByteArrayInputStream(content, (int) offset, (int) length);
+            }
+        };
+    }
+
     @Test
     void downloadFile_shouldRequireAuthentication() throws Exception {
         // Act & Assert
-        mockMvc.perform(get("/download/joe.bloggs/2024-11-09T14-30-00_document.pdf"))
+        performAndAwait(get("/download/joe.bloggs/2024-11-09T14-30-00_document.pdf"))
                 .andExpect(status().isUnauthorized());
     }
 
@@ -50,11 +128,11 @@ class DownloadControllerTest {
     @WithMockUser(username = "user", roles = "USER")
     void downloadFile_shouldBeForbiddenForRegularUser() throws Exception {
         // Act & Assert
-        mockMvc.perform(get("/download/joe.bloggs/2024-11-09T14-30-00_document.pdf"))
+        performAndAwait(get("/download/joe.bloggs/2024-11-09T14-30-00_document.pdf"))
                 .andExpect(status().isForbidden());
 
         // Verify no storage or audit operations
-        verify(storageService, never()).readFile(anyString());
+        verify(storageService, never()).open(anyString());
         verify(auditService, never()).recordDownload(anyString(), anyString(), anyString(), anyString(), any());
     }
 
@@ -64,25 +142,24 @@ class DownloadControllerTest {
         // Arrange
         String fileContent = "Test file content";
 
-        when(storageService.exists(anyString())).thenReturn(true);
-
-        // Use thenAnswer to create a fresh InputStream each time - critical for streaming tests
-        when(storageService.readFile(anyString())).thenAnswer(invocation ->
-                new ByteArrayInputStream(fileContent.getBytes(StandardCharsets.UTF_8))
-        );
+        when(storageService.open(anyString())).thenReturn(Optional.of(storedFile(fileContent.getBytes(StandardCharsets.UTF_8))));
 
         when(auditService.getOriginalFilename("joe.bloggs", "2024-11-09T14-30-00_document.pdf"))
                 .thenReturn("document.pdf");
 
         // Act & Assert
-        mockMvc.perform(get("/download/joe.bloggs/2024-11-09T14-30-00_document.pdf"))
+        performAndAwait(get("/download/joe.bloggs/2024-11-09T14-30-00_document.pdf"))
                 .andExpect(status().isOk())
                 .andExpect(header().string("Content-Disposition", "attachment; filename=\"document.pdf\""))
-                .andExpect(header().string("Content-Type", "application/octet-stream"));
-
-        // Verify file was accessed (at least once for readability check)
-        // Note: Streaming lambda may or may not execute in MockMvc depending on platform
-        verify(storageService, atLeastOnce()).readFile(anyString());
+                .andExpect(header().string("Content-Type", "application/octet-stream"))
+                .andExpect(header().string("Accept-Ranges", "bytes"))
+                .andExpect(header().longValue("Content-Length", fileContent.length()))
+                .andExpect(header().exists("ETag"));
+
+        // Verify the file was looked up once, and streamed from that handle
+        verify(storageService, times(1)).open(anyString());
+        verify(storageService, never()).exists(anyString());
+        verify(storageService, never()).readFile(anyString());
 
         // Verify audit was recorded
         verify(auditService).recordDownload(
@@ -98,10 +175,10 @@ class DownloadControllerTest {
     @WithMockUser(username = "admin", roles = "ADMIN")
     void downloadFile_shouldReturnNotFoundWhenFileDoesNotExist() throws Exception {
         // Arrange
-        when(storageService.exists(anyString())).thenReturn(false);
+        when(storageService.open(anyString())).thenReturn(Optional.empty());
 
         // Act & Assert
-        mockMvc.perform(get("/download/joe.bloggs/nonexistent.pdf"))
+        performAndAwait(get("/download/joe.bloggs/nonexistent.pdf"))
                 .andExpect(status().isNotFound());
 
         // Verify no audit was recorded
@@ -112,14 +189,11 @@ class DownloadControllerTest {
     @WithMockUser(username = "admin", roles = "ADMIN")
     void downloadFile_shouldHandleStorageException() throws Exception {
         // Arrange
-        when(storageService.exists(anyString())).thenReturn(true);
-        when(storageService.readFile(anyString()))
+        when(storageService.open(anyString()))
                 .thenThrow(new StorageException("Storage unavailable"));
-        when(auditService.getOriginalFilename(anyString(), anyString()))
-                .thenReturn("document.pdf");
 
         // Act & Assert
-        mockMvc.perform(get("/download/joe.bloggs/2024-11-09T14-30-00_document.pdf"))
+        performAndAwait(get("/download/joe.bloggs/2024-11-09T14-30-00_document.pdf"))
                 .andExpect(status().isInternalServerError());
 
         // Verify no audit was recorded (download failed)
@@ -135,18 +209,13 @@ class DownloadControllerTest {
             largeContent[i] = (byte) (i % 256);
         }
 
-        when(storageService.exists(anyString())).thenReturn(true);
-
-        // Use thenAnswer for fresh stream
-        when(storageService.readFile(anyString())).thenAnswer(invocation ->
-                new ByteArrayInputStream(largeContent)
-        );
+        when(storageService.open(anyString())).thenReturn(Optional.of(storedFile(largeContent)));
 
         when(auditService.getOriginalFilename("joe.bloggs", "2024-11-09T14-30-00_large.bin"))
                 .thenReturn("large.bin");
 
         // Act & Assert
-        mockMvc.perform(get("/download/joe.bloggs/2024-11-09T14-30-00_large.bin"))
+        performAndAwait(get("/download/joe.bloggs/2024-11-09T14-30-00_large.bin"))
                 .andExpect(status().isOk())
                 .andExpect(header().string("Content-Disposition", "attachment; filename=\"large.bin\""));
 
@@ -160,15 +229,12 @@ class DownloadControllerTest {
         // Arrange
         String fileContent = "Content";
 
-        when(storageService.exists(anyString())).thenReturn(true);
-        when(storageService.readFile(anyString())).thenAnswer(invocation ->
-                new ByteArrayInputStream(fileContent.getBytes(StandardCharsets.UTF_8))
-        );
+        when(storageService.open(anyString())).thenReturn(Optional.of(storedFile(fileContent.getBytes(StandardCharsets.UTF_8))));
         when(auditService.getOriginalFilename("joe.bloggs", "2024-11-09T14-30-00_My_Document.pdf"))
                 .thenReturn("My Document.pdf");
 
         // Act & Assert
-        mockMvc.perform(get("/download/joe.bloggs/2024-11-09T14-30-00_My_Document.pdf"))
+        performAndAwait(get("/download/joe.bloggs/2024-11-09T14-30-00_My_Document.pdf"))
                 .andExpect(status().isOk())
                 .andExpect(header().string("Content-Disposition", "attachment; filename=\"My Document.pdf\""));
     }
@@ -179,15 +245,12 @@ class DownloadControllerTest {
         // Arrange
         String fileContent = "Content";
 
-        when(storageService.exists(anyString())).thenReturn(true);
-        when(storageService.readFile(anyString())).thenAnswer(invocation ->
-                new ByteArrayInputStream(fileContent.getBytes(StandardCharsets.UTF_8))
-        );
+        when(storageService.open(anyString())).thenReturn(Optional.of(storedFile(fileContent.getBytes(StandardCharsets.UTF_8))));
         when(auditService.getOriginalFilename("joe.bloggs", "2024-11-09T14-30-00_file_name.pdf"))
                 .thenReturn("file (copy).pdf");
 
         // Act & Assert
-        mockMvc.perform(get("/download/joe.bloggs/2024-11-09T14-30-00_file_name.pdf"))
+        performAndAwait(get("/download/joe.bloggs/2024-11-09T14-30-00_file_name.pdf"))
                 .andExpect(status().isOk())
                 .andExpect(header().string("Content-Disposition", "attachment; filename=\"file (copy).pdf\""));
     }
@@ -198,14 +261,11 @@ class DownloadControllerTest {
         // Arrange
         String fileContent = "Content";
 
-        when(storageService.exists(anyString())).thenReturn(true);
-        when(storageService.readFile(anyString())).thenAnswer(invocation ->
-                new ByteArrayInputStream(fileContent.getBytes(StandardCharsets.UTF_8))
-        );
+        when(storageService.open(anyString())).thenReturn(Optional.of(storedFile(fileContent.getBytes(StandardCharsets.UTF_8))));
         when(auditService.getOriginalFilename(anyString(), anyString())).thenReturn("document.pdf");
 
         // Act
-        mockMvc.perform(get("/download/joe.bloggs/2024-11-09T14-30-00_document.pdf"))
+        performAndAwait(get("/download/joe.bloggs/2024-11-09T14-30-00_document.pdf"))
                 .andExpect(status().isOk());
 
         // Assert - verify downloader is 'admin'
@@ -222,14 +282,11 @@ class DownloadControllerTest {
     @WithMockUser(username = "admin", roles = "ADMIN")
     void downloadFile_shouldHandleEmptyFile() throws Exception {
         // Arrange - empty file
-        when(storageService.exists(anyString())).thenReturn(true);
-        when(storageService.readFile(anyString())).thenAnswer(invocation ->
-                new ByteArrayInputStream(new byte[0])
-        );
+        when(storageService.open(anyString())).thenReturn(Optional.of(storedFile(new byte[0])));
         when(auditService.getOriginalFilename(anyString(), anyString())).thenReturn("empty.txt");
 
         // Act & Assert
-        mockMvc.perform(get("/download/joe.bloggs/2024-11-09T14-30-00_empty.txt"))
+        performAndAwait(get("/download/joe.bloggs/2024-11-09T14-30-00_empty.txt"))
                 .andExpect(status().isOk())
                 .andExpect(content().string(""));
 
@@ -243,14 +300,11 @@ class DownloadControllerTest {
         // Arrange
         String fileContent = "Content";
 
-        when(storageService.exists(anyString())).thenReturn(true);
-        when(storageService.readFile(anyString())).thenAnswer(invocation ->
-                new ByteArrayInputStream(fileContent.getBytes(StandardCharsets.UTF_8))
-        );
+        when(storageService.open(anyString())).thenReturn(Optional.of(storedFile(fileContent.getBytes(StandardCharsets.UTF_8))));
         when(auditService.getOriginalFilename(anyString(), anyString())).thenReturn("document.pdf");
 
         // Act
-        mockMvc.perform(get("/download/joe.bloggs/2024-11-09T14-30-00_document.pdf"))
+        performAndAwait(get("/download/joe.bloggs/2024-11-09T14-30-00_document.pdf"))
                 .andExpect(status().isOk());
 
         // Assert - verify downloader is 'superadmin'
@@ -269,19 +323,15 @@ class DownloadControllerTest {
         // Arrange
         String fileContent = "Content";
 
-        when(storageService.exists(anyString())).thenReturn(true);
-        when(storageService.readFile(anyString())).thenAnswer(invocation ->
-                new ByteArrayInputStream(fileContent.getBytes(StandardCharsets.UTF_8))
-        );
+        when(storageService.open(anyString())).thenReturn(Optional.of(storedFile(fileContent.getBytes(StandardCharsets.UTF_8))));
         when(auditService.getOriginalFilename(anyString(), anyString())).thenReturn("document.pdf");
 
         // Act
-        mockMvc.perform(get("/download/joe.bloggs/2024-11-09T14-30-00_document.pdf"))
+        performAndAwait(get("/download/joe.bloggs/2024-11-09T14-30-00_document.pdf"))
                 .andExpect(status().isOk());
 
         // Assert - verify correct storage path was used
-        // Note: readFile is called twice - once for readability check, once for streaming
-        verify(storageService, atLeast(1)).readFile(argThat(path ->
+        verify(storageService).open(argThat(path ->
                 path.contains("joe.bloggs") &&
                         path.contains("2024-11-09T14-30-00_document.pdf")
         ));
@@ -293,18 +343,246 @@ class DownloadControllerTest {
         // Arrange
         String fileContent = "Content";
 
-        when(storageService.exists(anyString())).thenReturn(true);
-        when(storageService.readFile(anyString())).thenAnswer(invocation ->
-                new ByteArrayInputStream(fileContent.getBytes(StandardCharsets.UTF_8))
-        );
+        when(storageService.open(anyString())).thenReturn(Optional.of(storedFile(fileContent.getBytes(StandardCharsets.UTF_8))));
         // Simulate audit service returning stored filename as fallback
         when(auditService.getOriginalFilename("joe.bloggs", "2024-11-09T14-30-00_document.pdf"))
                 .thenReturn("2024-11-09T14-30-00_document.pdf");
 
         // Act & Assert
-        mockMvc.perform(get("/download/joe.bloggs/2024-11-09T14-30-00_document.pdf"))
+        performAndAwait(get("/download/joe.bloggs/2024-11-09T14-30-00_document.pdf"))
                 .andExpect(status().isOk())
                 .andExpect(header().string("Content-Disposition",
                         "attachment; filename=\"2024-11-09T14-30-00_document.pdf\""));
     }
-}
\ No newline at end of file
+
+    @Test
+    @WithMockUser(username = "admin", roles = "ADMIN")
+    void downloadFile_shouldReturnPartialContentForSingleRange() throws Exception {
+        // Arrange
+        when(storageService.open(anyString())).thenReturn(Optional.of(storedFile("0123456789".getBytes(StandardCharsets.UTF_8))));
+        when(auditService.getOriginalFilename(anyString(), anyString())).thenReturn("digits.txt");
+
+        // Act & Assert
+        performAndAwait(get("/download/joe.bloggs/2024-11-09T14-30-00_digits.txt")
+                .header("Range", "bytes=2-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 2-5/10"))
+                .andExpect(header().longValue("Content-Length", 4))
+                .andExpect(content().string("2345"));
+
+        // A range that does not start the file is a resumed download, already audited
+        verify(auditService, never()).recordDownload(anyString(), anyString(), anyString(), anyString(), any());
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = "ADMIN")
+    void downloadFile_shouldServeSuffixRangeAndAuditRangeFromStart() throws Exception {
+        // Arrange
+        when(storageService.open(anyString())).thenReturn(Optional.of(storedFile("0123456789".getBytes(StandardCharsets.UTF_8))));
+        when(auditService.getOriginalFilename(anyString(), anyString())).thenReturn("digits.txt");
+
+        // Act & Assert - last three bytes
+        performAndAwait(get("/download/joe.bloggs/2024-11-09T14-30-00_digits.txt")
+                .header("Range", "bytes=-3"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 7-9/10"))
+                .andExpect(content().string("789"));
+
+        // Act & Assert - open-ended range from the start is audited as a download
+        performAndAwait(get("/download/joe.bloggs/2024-11-09T14-30-00_digits.txt")
+                .header("Range", "bytes=0-"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 0-9/10"))
+                .andExpect(content().string("0123456789"));
+
+        verify(auditService, times(1)).recordDownload(anyString(), anyString(), anyString(), anyString(), any());
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = "ADMIN")
+    void downloadFile_shouldReturnMultipartByteRangesForSeveralRanges() throws Exception {
+        // Arrange
+        when(storageService.open(anyString())).thenReturn(Optional.of(storedFile("0123456789".getBytes(StandardCharsets.UTF_8))));
+        when(auditService.getOriginalFilename(anyString(), anyString())).thenReturn("digits.txt");
+
+        // Act
+        MvcResult result = performAndAwait(get("/download/joe.bloggs/2024-11-09T14-30-00_digits.txt")
+                .header("Range", "bytes=0-1,7-8"))
+                .andExpect(status().isPartialContent())
+                .andReturn();
+
+        // Assert
+        String contentType = result.getResponse().getContentType();
+        assertThat(contentType).startsWith("multipart/byteranges; boundary=");
+        String boundary = contentType.substring(contentType.indexOf('=') + 1);
+        String body = result.getResponse().getContentAsString();
+        assertThat(body).isEqualTo(
+                "\r\n--" + boundary + "\r\nContent-Type: application/octet-stream\r\nContent-Range: bytes 0-1/10\r\n\r\n01"
+                        + "\r\n--" + boundary + "\r\nContent-Type: application/octet-stream\r\nContent-Range: bytes 7-8/10\r\n\r\n78"
+                        + "\r\n--" + boundary + "--\r\n");
+        assertThat(result.getResponse().getHeader("Content-Length")).isEqualTo(String.valueOf(body.length()));
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = "ADMIN")
+    void downloadFile_shouldRejectUnsatisfiableRange() throws Exception {
+        // Arrange
+        when(storageService.open(anyString())).thenReturn(Optional.of(storedFile("0123456789".getBytes(StandardCharsets.UTF_8))));
+
+        // Act & Assert
+        performAndAwait(get("/download/joe.bloggs/2024-11-09T14-30-00_digits.txt")
+                .header("Range", "bytes=10-20"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string("Content-Range", "bytes */10"));
+
+        verify(auditService, never()).recordDownload(anyString(), anyString(), anyString(), anyString(), any());
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = "ADMIN")
+    void downloadFile_shouldSendWholeFileWhenIfRangeIsStale() throws Exception {
+        // Arrange
+        when(storageService.open(anyString())).thenReturn(Optional.of(storedFile("0123456789".getBytes(StandardCharsets.UTF_8))));
+        when(auditService.getOriginalFilename(anyString(), anyString())).thenReturn("digits.txt");
+
+        // Act - validator from an earlier version of the file
+        MvcResult result = performAndAwait(get("/download/joe.bloggs/2024-11-09T14-30-00_digits.txt")
+                .header("Range", "bytes=5-")
+                .header("If-Range", "\"0-a\""))
+                .andExpect(status().isOk())
+                .andExpect(content().string("0123456789"))
+                .andReturn();
+
+        // Act & Assert - the current validator resumes
+        performAndAwait(get("/download/joe.bloggs/2024-11-09T14-30-00_digits.txt")
+                .header("Range", "bytes=5-")
+                .header("If-Range", result.getResponse().getHeader("ETag")))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().string("56789"));
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = "ADMIN")
+    void downloadFile_shouldIgnoreMalformedRange() throws Exception {
+        // Arrange
+        when(storageService.open(anyString())).thenReturn(Optional.of(storedFile("0123456789".getBytes(StandardCharsets.UTF_8))));
+        when(auditService.getOriginalFilename(anyString(), anyString())).thenReturn("digits.txt");
+
+        // Act & Assert
+        performAndAwait(get("/download/joe.bloggs/2024-11-09T14-30-00_digits.txt")
+                .header("Range", "lines=1-2"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("0123456789"));
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = "ADMIN")
+    void downloadFile_shouldHandLocalFilesToContainerSendfile() throws Exception {
+        // Arrange
+        byte[] content = new byte[64 * 1024];
+        Path path = Path.of("/data/joe.bloggs/2024-11-09T14-30-00_large.bin");
+        when(storageService.open(anyString())).thenReturn(Optional.of(localFile(path, content)));
+        when(auditService.getOriginalFilename(anyString(), anyString())).thenReturn("large.bin");
+
+        // Act & Assert - the container sends the requested bytes itself
+        MvcResult result = performAndAwait(get("/download/joe.bloggs/2024-11-09T14-30-00_large.bin")
+                .requestAttr("org.apache.tomcat.sendfile.support", true)
+                .header("Range", "bytes=1024-"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().longValue("Content-Length", content.length - 1024))
+                .andExpect(request().attribute("org.apache.tomcat.sendfile.filename", path.toString()))
+                .andExpect(request().attribute("org.apache.tomcat.sendfile.start", 1024L))
+                .andExpect(request().attribute("org.apache.tomcat.sendfile.end", (long) content.length))
+                .andReturn();
+
+        assertThat(result.getResponse().getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = "ADMIN")
+    void downloadFile_shouldStreamLocalFilesWhenContainerLacksSendfile() throws Exception {
+        // Arrange
+        byte[] content = new byte[64 * 1024];
+        Path path = Path.of("/data/joe.bloggs/2024-11-09T14-30-00_large.bin");
+        when(storageService.open(anyString())).thenReturn(Optional.of(localFile(path, content)));
+        when(auditService.getOriginalFilename(anyString(), anyString())).thenReturn("large.bin");
+
+        // Act & Assert
+        performAndAwait(get("/download/joe.bloggs/2024-11-09T14-30-00_large.bin"))
+                .andExpect(status().isOk())
+                .andExpect(request().attribute("org.apache.tomcat.sendfile.filename", nullValue()))
+                .andExpect(content().bytes(content));
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = "ADMIN")
+    void downloadFile_shouldSendValidatorsThatCachesMustRevalidate() throws Exception {
+        // Arrange
+        Instant updated = Instant.parse("2024-11-09T14:30:00Z");
+        when(storageService.open(anyString())).thenReturn(Optional.of(storedFile("Content".getBytes(StandardCharsets.UTF_8), updated)));
+        when(auditService.getOriginalFilename(anyString(), anyString())).thenReturn("document.pdf");
+
+        // Act & Assert
+        performAndAwait(get("/download/joe.bloggs/2024-11-09T14-30-00_document.pdf"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1-7\""))
+                .andExpect(header().string("Last-Modified", "Sat, 09 Nov 2024 14:30:00 GMT"))
+                .andExpect(header().string("Cache-Control", "no-cache, private"));
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = "ADMIN")
+    void downloadFile_shouldReturnNotModifiedWhenEtagMatches() throws Exception {
+        // Arrange
+        when(storageService.open(anyString())).thenReturn(Optional.of(storedFile("Content".getBytes(StandardCharsets.UTF_8))));
+
+        // Act & Assert
+        performAndAwait(get("/download/joe.bloggs/2024-11-09T14-30-00_document.pdf")
+                .header("If-None-Match", "\"0-7\", W/\"1-7\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"1-7\""))
+                .andExpect(content().string(""));
+
+        // Nothing was downloaded
+        verify(auditService, never()).getOriginalFilename(anyString(), anyString());
+        verify(auditService, never()).recordDownload(anyString(), anyString(), anyString(), anyString(), any());
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = "ADMIN")
+    void downloadFile_shouldSendFileWhenEtagDoesNotMatch() throws Exception {
+        // Arrange - the If-Modified-Since date would match, but If-None-Match takes precedence
+        Instant updated = Instant.parse("2024-11-09T14:30:00Z");
+        when(storageService.open(anyString())).thenReturn(Optional.of(storedFile("Content".getBytes(StandardCharsets.UTF_8), updated)));
+        when(auditService.getOriginalFilename(anyString(), anyString())).thenReturn("document.pdf");
+
+        // Act & Assert
+        performAndAwait(get("/download/joe.bloggs/2024-11-09T14-30-00_document.pdf")
+                .header("If-None-Match", "\"0-7\"")
+                .header("If-Modified-Since", "Sat, 09 Nov 2024 14:30:00 GMT"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Content"));
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = "ADMIN")
+    void downloadFile_shouldHonourIfModifiedSince() throws Exception {
+        // Arrange
+        Instant updated = Instant.parse("2024-11-09T14:30:00Z");
+        when(storageService.open(anyString())).thenReturn(Optional.of(storedFile("Content".getBytes(StandardCharsets.UTF_8), updated)));
+        when(auditService.getOriginalFilename(anyString(), anyString())).thenReturn("document.pdf");
+
+        // Act & Assert - unchanged since the client's copy
+        performAndAwait(get("/download/joe.bloggs/2024-11-09T14-30-00_document.pdf")
+                .header("If-Modified-Since", "Sat, 09 Nov 2024 14:30:00 GMT"))
+                .andExpect(status().isNotModified());
+
+        // Act & Assert - modified after the client's copy
+        performAndAwait(get("/download/joe.bloggs/2024-11-09T14-30-00_document.pdf")
+                .header("If-Modified-Since", "Sat, 09 Nov 2024 14:29:59 GMT"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Content"));
+
+        verify(auditService, times(1)).recordDownload(anyString(), anyString(), anyString(), anyString(), any());
+    }
+}
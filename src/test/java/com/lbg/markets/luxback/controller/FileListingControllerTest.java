@@ -1,7 +1,9 @@
 package com.lbg.markets.luxback.controller;
 
 import com.lbg.markets.luxback.config.TestConfig;
+import com.lbg.markets.luxback.model.AuditCursor;
 import com.lbg.markets.luxback.model.AuditEvent;
+import com.lbg.markets.luxback.model.AuditPage;
 import com.lbg.markets.luxback.model.SearchCriteria;
 import com.lbg.markets.luxback.service.AuditService;
 import org.junit.jupiter.api.Test;
@@ -20,6 +22,8 @@ import java.util.List;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -54,7 +58,7 @@ class FileListingControllerTest {
                 .andExpect(status().isForbidden());
 
         // Verify service was never called
-        verify(auditService, never()).searchAllAudit(any());
+        verify(auditService, never()).searchPage(any(), anyInt(), anyInt());
     }
 
     @Test
@@ -65,7 +69,7 @@ class FileListingControllerTest {
                 createUploadEvent("uuid1", "joe.bloggs", "document.pdf", "2024-11-09T14:30:00Z"),
                 createUploadEvent("uuid2", "jane.smith", "report.xlsx", "2024-11-10T09:00:00Z")
         );
-        when(auditService.searchAllAudit(any(SearchCriteria.class))).thenReturn(mockEvents);
+        stubSearch(mockEvents);
 
         // Act & Assert
         mockMvc.perform(get("/files"))
@@ -84,7 +88,7 @@ class FileListingControllerTest {
         List<AuditEvent> mockEvents = List.of(
                 createUploadEvent("uuid1", "joe.bloggs", "document.pdf", "2024-11-09T14:30:00Z")
         );
-        when(auditService.searchAllAudit(any(SearchCriteria.class))).thenReturn(mockEvents);
+        stubSearch(mockEvents);
 
         // Act & Assert
         mockMvc.perform(get("/files")
@@ -94,9 +98,9 @@ class FileListingControllerTest {
                 .andExpect(model().attributeExists("criteria"));
 
         // Verify search criteria was passed correctly
-        verify(auditService).searchAllAudit(argThat(criteria ->
+        verify(auditService).searchPage(argThat(criteria ->
                 criteria.getFilename() != null && criteria.getFilename().equals("document")
-        ));
+        ), anyInt(), anyInt());
     }
 
     @Test
@@ -106,7 +110,7 @@ class FileListingControllerTest {
         List<AuditEvent> mockEvents = List.of(
                 createUploadEvent("uuid1", "joe.bloggs", "document.pdf", "2024-11-09T14:30:00Z")
         );
-        when(auditService.searchAllAudit(any(SearchCriteria.class))).thenReturn(mockEvents);
+        stubSearch(mockEvents);
 
         // Act & Assert
         mockMvc.perform(get("/files")
@@ -114,9 +118,9 @@ class FileListingControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(model().attribute("files", hasSize(1)));
 
-        verify(auditService).searchAllAudit(argThat(criteria ->
+        verify(auditService).searchPage(argThat(criteria ->
                 criteria.getUsername() != null && criteria.getUsername().equals("joe.bloggs")
-        ));
+        ), anyInt(), anyInt());
     }
 
     @Test
@@ -126,7 +130,7 @@ class FileListingControllerTest {
         List<AuditEvent> mockEvents = List.of(
                 createUploadEvent("uuid1", "joe.bloggs", "document.pdf", "2024-11-09T14:30:00Z")
         );
-        when(auditService.searchAllAudit(any(SearchCriteria.class))).thenReturn(mockEvents);
+        stubSearch(mockEvents);
 
         // Act & Assert
         mockMvc.perform(get("/files")
@@ -135,12 +139,12 @@ class FileListingControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(model().attribute("files", hasSize(1)));
 
-        verify(auditService).searchAllAudit(argThat(criteria ->
+        verify(auditService).searchPage(argThat(criteria ->
                 criteria.getStartDate() != null &&
                         criteria.getStartDate().equals(LocalDate.of(2024, 11, 1)) &&
                         criteria.getEndDate() != null &&
                         criteria.getEndDate().equals(LocalDate.of(2024, 11, 30))
-        ));
+        ), anyInt(), anyInt());
     }
 
     @Test
@@ -156,7 +160,7 @@ class FileListingControllerTest {
                     "2024-11-09T14:30:00Z"
             ));
         }
-        when(auditService.searchAllAudit(any(SearchCriteria.class))).thenReturn(mockEvents);
+        stubSearch(mockEvents);
 
         // Act & Assert - first page
         mockMvc.perform(get("/files")
@@ -179,7 +183,7 @@ class FileListingControllerTest {
     @WithMockUser(username = "admin", roles = "ADMIN")
     void listFiles_shouldShowEmptyListWhenNoResults() throws Exception {
         // Arrange
-        when(auditService.searchAllAudit(any(SearchCriteria.class))).thenReturn(List.of());
+        stubSearch(List.of());
 
         // Act & Assert
         mockMvc.perform(get("/files"))
@@ -198,7 +202,7 @@ class FileListingControllerTest {
                 createDownloadEvent("uuid2", "joe.bloggs", "document.pdf", "2024-11-09T15:00:00Z", "admin"),
                 createUploadEvent("uuid3", "jane.smith", "report.xlsx", "2024-11-10T09:00:00Z")
         );
-        when(auditService.searchAllAudit(any(SearchCriteria.class))).thenReturn(mockEvents);
+        stubSearch(mockEvents);
 
         // Act & Assert
         mockMvc.perform(get("/files"))
@@ -213,7 +217,7 @@ class FileListingControllerTest {
         List<AuditEvent> mockEvents = List.of(
                 createUploadEvent("uuid1", "joe.bloggs", "document.pdf", "2024-11-09T14:30:00Z")
         );
-        when(auditService.searchAllAudit(any(SearchCriteria.class))).thenReturn(mockEvents);
+        stubSearch(mockEvents);
 
         // Act & Assert - combined filters
         mockMvc.perform(get("/files")
@@ -224,12 +228,12 @@ class FileListingControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(model().attribute("files", hasSize(1)));
 
-        verify(auditService).searchAllAudit(argThat(criteria ->
+        verify(auditService).searchPage(argThat(criteria ->
                 "document".equals(criteria.getFilename()) &&
                         "joe.bloggs".equals(criteria.getUsername()) &&
                         criteria.getStartDate() != null &&
                         criteria.getEndDate() != null
-        ));
+        ), anyInt(), anyInt());
     }
 
     @Test
@@ -239,7 +243,7 @@ class FileListingControllerTest {
         List<AuditEvent> mockEvents = List.of(
                 createUploadEvent("uuid1", "joe.bloggs", "document.pdf", "2024-11-09T14:30:00Z")
         );
-        when(auditService.searchAllAudit(any(SearchCriteria.class))).thenReturn(mockEvents);
+        stubSearch(mockEvents);
 
         // Act & Assert - no page parameter
         mockMvc.perform(get("/files"))
@@ -260,7 +264,7 @@ class FileListingControllerTest {
                     "2024-11-09T14:30:00Z"
             ));
         }
-        when(auditService.searchAllAudit(any(SearchCriteria.class))).thenReturn(mockEvents);
+        stubSearch(mockEvents);
 
         // Act & Assert - request page 5 (beyond available data)
         mockMvc.perform(get("/files")
@@ -278,7 +282,7 @@ class FileListingControllerTest {
         List<AuditEvent> mockEvents = List.of(
                 createUploadEvent("uuid1", "joe.bloggs", "document.pdf", "2024-11-09T14:30:00Z")
         );
-        when(auditService.searchAllAudit(any(SearchCriteria.class))).thenReturn(mockEvents);
+        stubSearch(mockEvents);
 
         // Act & Assert
         mockMvc.perform(get("/files")
@@ -302,7 +306,7 @@ class FileListingControllerTest {
                     "2024-11-09T14:30:00Z"
             ));
         }
-        when(auditService.searchAllAudit(any(SearchCriteria.class))).thenReturn(mockEvents);
+        stubSearch(mockEvents);
 
         // Act & Assert
         mockMvc.perform(get("/files"))
@@ -324,7 +328,7 @@ class FileListingControllerTest {
                     "2024-11-09T14:30:00Z"
             ));
         }
-        when(auditService.searchAllAudit(any(SearchCriteria.class))).thenReturn(mockEvents);
+        stubSearch(mockEvents);
 
         // Act & Assert - page 1
         mockMvc.perform(get("/files")
@@ -334,7 +338,114 @@ class FileListingControllerTest {
                 .andExpect(model().attribute("totalPages", 6));
     }
 
+    @Test
+    @WithMockUser(username = "admin", roles = "ADMIN")
+    void listFiles_shouldResumeFromCursorWithoutRecounting() throws Exception {
+        // Arrange
+        AuditEvent last = createUploadEvent("uuid9", "joe.bloggs", "file9.pdf", "2024-11-09T14:30:00Z");
+        String cursor = AuditCursor.after(last, 11L).encode();
+        when(auditService.searchAfter(any(SearchCriteria.class), any(AuditCursor.class), anyInt(), anyBoolean()))
+                .thenReturn(AuditPage.builder()
+                        .events(List.of(createUploadEvent("uuid10", "joe.bloggs", "file10.pdf", "2024-11-08T14:30:00Z")))
+                        .build());
+
+        // Act & Assert
+        mockMvc.perform(get("/files")
+                        .param("page", "1")
+                        .param("cursor", cursor))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("files", hasSize(1)))
+                .andExpect(model().attribute("totalResults", 11))
+                .andExpect(model().attribute("totalPages", 2))
+                .andExpect(model().attribute("currentPage", 1));
+
+        verify(auditService).searchAfter(any(SearchCriteria.class),
+                argThat(position -> "uuid9".equals(position.getEventId())
+                        && Instant.parse("2024-11-09T14:30:00Z").equals(position.getTimestamp())),
+                eq(10), eq(false));
+        verify(auditService, never()).searchPage(any(), anyInt(), anyInt());
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = "ADMIN")
+    void listFiles_shouldKeepCarriedTotalConsistentWithPagesServed() throws Exception {
+        // Arrange - a cursor claiming far more matches than the last page shows
+        AuditEvent last = createUploadEvent("uuid9", "joe.bloggs", "file9.pdf", "2024-11-09T14:30:00Z");
+        String cursor = AuditCursor.after(last, 5_000_000_000L).encode();
+        when(auditService.searchAfter(any(SearchCriteria.class), any(AuditCursor.class), anyInt(), anyBoolean()))
+                .thenReturn(AuditPage.builder()
+                        .events(List.of(createUploadEvent("uuid10", "joe.bloggs", "file10.pdf", "2024-11-08T14:30:00Z")))
+                        .build());
+
+        // Act & Assert - no next cursor, so this is the last page
+        mockMvc.perform(get("/files")
+                        .param("page", "1")
+                        .param("cursor", cursor)
+                        .param("total", "999999"))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("totalResults", 11))
+                .andExpect(model().attribute("totalPages", 2));
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = "ADMIN")
+    void listFiles_shouldCountWhenCursorCarriesNoTotal() throws Exception {
+        // Arrange
+        AuditEvent last = createUploadEvent("uuid9", "joe.bloggs", "file9.pdf", "2024-11-09T14:30:00Z");
+        when(auditService.searchAfter(any(SearchCriteria.class), any(AuditCursor.class), anyInt(), anyBoolean()))
+                .thenReturn(AuditPage.builder()
+                        .events(List.of(createUploadEvent("uuid10", "joe.bloggs", "file10.pdf", "2024-11-08T14:30:00Z")))
+                        .totalResults(11L)
+                        .build());
+
+        // Act & Assert
+        mockMvc.perform(get("/files")
+                        .param("page", "1")
+                        .param("cursor", AuditCursor.after(last).encode()))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("totalResults", 11));
+
+        verify(auditService).searchAfter(any(SearchCriteria.class), any(AuditCursor.class), eq(10), eq(true));
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = "ADMIN")
+    void listFiles_shouldFallBackToPageWhenCursorIsMalformed() throws Exception {
+        // Arrange
+        stubSearch(List.of(createUploadEvent("uuid1", "joe.bloggs", "document.pdf", "2024-11-09T14:30:00Z")));
+
+        // Act & Assert
+        mockMvc.perform(get("/files")
+                        .param("cursor", "not-a-cursor"))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("files", hasSize(1)));
+
+        verify(auditService).searchPage(any(), eq(0), eq(10));
+    }
+
     // Helper methods
+
+    /**
+     * Stub searchPage to page through the given events, applying the requested event type
+     */
+    private void stubSearch(List<AuditEvent> events) {
+        when(auditService.searchPage(any(SearchCriteria.class), anyInt(), anyInt())).thenAnswer(invocation -> {
+            SearchCriteria criteria = invocation.getArgument(0);
+            int offset = invocation.getArgument(1);
+            int limit = invocation.getArgument(2);
+
+            List<AuditEvent> matching = events.stream()
+                    .filter(event -> criteria.getEventType() == null
+                            || criteria.getEventType().equals(event.getEventType()))
+                    .toList();
+            int from = Math.min(offset, matching.size());
+            return AuditPage.builder()
+                    .events(matching.subList(from, Math.min(from + limit, matching.size())))
+                    .totalResults((long) matching.size())
+                    .build();
+        });
+    }
+
     private AuditEvent createUploadEvent(String eventId, String username, String filename, String timestamp) {
         return AuditEvent.builder()
                 .eventId(eventId)
@@ -0,0 +1,74 @@
+package com.lbg.markets.luxback.service;
+
+import com.lbg.markets.luxback.config.LuxBackConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for AuditCacheWarmer.
+ * Tests the health status reported before, after and without a warm-up.
+ */
+@ExtendWith(MockitoExtension.class)
+class AuditCacheWarmerTest {
+
+    @Mock
+    private AuditService auditService;
+
+    private LuxBackConfig config;
+    private AuditCacheWarmer warmer;
+
+    @BeforeEach
+    void setUp() {
+        config = new LuxBackConfig();
+        config.getAudit().setWarmUpCache(true);
+        warmer = new AuditCacheWarmer(auditService, config);
+    }
+
+    @Test
+    void health_shouldBeOutOfServiceUntilCacheIsWarm() throws InterruptedException {
+        // Arrange
+        when(auditService.warmCache()).thenReturn(3);
+
+        // Act & Assert
+        assertThat(warmer.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+
+        warmer.warmUp();
+
+        Health health = warmer.health();
+        assertThat(health.getStatus()).isEqualTo(Status.UP);
+        assertThat(health.getDetails()).containsEntry("users", 3);
+    }
+
+    @Test
+    void health_shouldBeUpWhenWarmUpFails() throws InterruptedException {
+        // Arrange
+        when(auditService.warmCache()).thenThrow(new IllegalStateException("storage unavailable"));
+
+        // Act
+        warmer.warmUp();
+
+        // Assert - searches still load users on demand
+        assertThat(warmer.health().getStatus()).isEqualTo(Status.UP);
+    }
+
+    @Test
+    void health_shouldBeUpWhenWarmUpDisabled() {
+        // Arrange
+        config.getAudit().setWarmUpCache(false);
+
+        // Act
+        warmer.start();
+
+        // Assert
+        assertThat(warmer.health().getStatus()).isEqualTo(Status.UP);
+        verifyNoInteractions(auditService);
+    }
+}
@@ -1,35 +1,63 @@
 package com.lbg.markets.luxback.service;
 
 import com.lbg.markets.luxback.config.LuxBackConfig;
+import com.lbg.markets.luxback.exception.StorageException;
+import com.lbg.markets.luxback.model.AuditCursor;
 import com.lbg.markets.luxback.model.AuditEvent;
+import com.lbg.markets.luxback.model.AuditPage;
 import com.lbg.markets.luxback.model.FileMetadata;
 import com.lbg.markets.luxback.model.SearchCriteria;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.ArgumentCaptor;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 /**
  * Unit tests for AuditService.
  * Tests CSV operations, caching behavior, and search functionality.
+ * Audit files live in a temporary directory behind a spied LocalStorageService.
  */
 @ExtendWith(MockitoExtension.class)
 class AuditServiceTest {
 
-    @Mock
-    private StorageService storageService;
+    private static final String HEADER =
+            "event_id,event_type,timestamp,username,filename,stored_as,file_size,content_type,ip_address,user_agent,session_id,actor_username\n";
+
+    @TempDir
+    Path tempDir;
 
     @Mock
     private HttpServletRequest request;
@@ -37,14 +65,35 @@ class AuditServiceTest {
     @Mock
     private HttpSession session;
 
+    private StorageService storageService;
+    private AuditLogStore auditLogStore;
+    private AuditPartitionStore partitionStore;
+    private AuditWriteQueue writeQueue;
     private AuditService auditService;
     private LuxBackConfig config;
+    private Path auditDir;
 
     @BeforeEach
     void setUp() {
+        auditDir = tempDir.resolve("audit");
         config = new LuxBackConfig();
-        config.setAuditIndexPath("/audit");
-        auditService = new AuditService(storageService, config);
+        config.setAuditIndexPath(auditDir.toString());
+        config.getAudit().setWalPath(tempDir.resolve("audit-wal.csv").toString());
+        // Background flushes never fire during a test - tests flush explicitly
+        config.getAudit().setFlushInterval(Duration.ofHours(1));
+
+        storageService = spy(new LocalStorageService());
+        auditLogStore = new AuditLogStore(storageService, config);
+        partitionStore = new AuditPartitionStore(storageService, config, auditLogStore);
+        writeQueue = new AuditWriteQueue(auditLogStore, partitionStore, config);
+        writeQueue.start();
+        auditService = new AuditService(auditLogStore, writeQueue, new FilenameIndex(auditLogStore, writeQueue, config),
+                partitionStore, config);
+    }
+
+    @AfterEach
+    void tearDown() {
+        writeQueue.shutdown();
     }
 
     /**
@@ -58,34 +107,57 @@ class AuditServiceTest {
         when(session.getId()).thenReturn("session123");
     }
 
-    @Test
-    void recordUpload_shouldCreateNewCsvFileWithHeaders() {
-        // Arrange
-        setupMockRequest(); // Setup request mock for this test
+    /**
+     * Write a user's base audit file (header plus records)
+     */
+    private String writeBaseFile(String username, String csvContent) throws IOException {
+        Files.createDirectories(auditDir);
+        Path path = auditDir.resolve(username + ".csv");
+        Files.writeString(path, csvContent, StandardCharsets.UTF_8);
+        return path.toString();
+    }
 
-        String username = "joe.bloggs";
-        FileMetadata metadata = FileMetadata.builder()
-                .originalFilename("document.pdf")
-                .storedFilename("2024-11-09T14-30-00_document.pdf")
+    /**
+     * List a user's pending segment files
+     */
+    private List<Path> listSegments(String username) throws IOException {
+        Path dir = auditDir.resolve(username);
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.sorted().toList();
+        }
+    }
+
+    private FileMetadata uploadMetadata(String originalFilename, String storedFilename) {
+        return FileMetadata.builder()
+                .originalFilename(originalFilename)
+                .storedFilename(storedFilename)
                 .size(1024000L)
                 .contentType("application/pdf")
                 .build();
+    }
+
+    @Test
+    void recordUpload_shouldWriteEventToNewSegment() throws IOException {
+        // Arrange
+        setupMockRequest(); // Setup request mock for this test
 
-        when(storageService.exists(anyString())).thenReturn(false);
+        String username = "joe.bloggs";
+        FileMetadata metadata = uploadMetadata("document.pdf", "2024-11-09T14-30-00_document.pdf");
 
         // Act
         auditService.recordUpload(username, metadata, request);
+        writeQueue.flush();
 
         // Assert
-        ArgumentCaptor<String> pathCaptor = ArgumentCaptor.forClass(String.class);
-        ArgumentCaptor<String> contentCaptor = ArgumentCaptor.forClass(String.class);
-
-        verify(storageService).writeString(pathCaptor.capture(), contentCaptor.capture());
-
-        assertThat(pathCaptor.getValue()).isEqualTo("/audit/joe.bloggs.csv");
+        List<Path> segments = listSegments(username);
+        assertThat(segments).hasSize(1);
+        assertThat(segments.get(0).getFileName().toString()).endsWith(".csv");
 
-        String csvContent = contentCaptor.getValue();
-        assertThat(csvContent).contains("event_id,event_type,timestamp");
+        String csvContent = Files.readString(segments.get(0), StandardCharsets.UTF_8);
+        assertThat(csvContent).doesNotContain("event_id,event_type,timestamp"); // Segments have no header
         assertThat(csvContent).contains("UPLOAD");
         assertThat(csvContent).contains("document.pdf");
         assertThat(csvContent).contains("2024-11-09T14-30-00_document.pdf");
@@ -95,30 +167,30 @@ class AuditServiceTest {
     }
 
     @Test
-    void recordUpload_shouldAppendToExistingCsvFile() {
+    void recordUpload_shouldNotReadOrRewriteExistingAuditFile() throws IOException {
         // Arrange
         setupMockRequest(); // Setup request mock for this test
 
         String username = "joe.bloggs";
-        FileMetadata metadata = FileMetadata.builder()
-                .originalFilename("report.xlsx")
-                .storedFilename("2024-11-10T09-00-00_report.xlsx")
-                .size(2048000L)
-                .contentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
-                .build();
-
-        when(storageService.exists(anyString())).thenReturn(true);
+        String existing = HEADER
+                + "uuid1,UPLOAD,2024-11-09T14:30:00Z,joe.bloggs,old.pdf,2024-11-09T14-30-00_old.pdf,1024000,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n";
+        String basePath = writeBaseFile(username, existing);
 
         // Act
-        auditService.recordUpload(username, metadata, request);
-
-        // Assert
-        verify(storageService).append(eq("/audit/joe.bloggs.csv"), anyString());
-        verify(storageService, never()).writeString(anyString(), anyString());
+        auditService.recordUpload(username,
+                uploadMetadata("report.pdf", "2024-11-10T09-00-00_report.pdf"), request);
+        writeQueue.flush();
+
+        // Assert - write cost is independent of existing history
+        verify(storageService, never()).openReader(anyString());
+        verify(storageService, never()).append(anyString(), anyString());
+        verify(storageService, never()).writeString(eq(basePath), anyString());
+        assertThat(Files.readString(Path.of(basePath), StandardCharsets.UTF_8)).isEqualTo(existing);
+        assertThat(listSegments(username)).hasSize(1);
     }
 
     @Test
-    void recordDownload_shouldAppendDownloadEventWithDownloaderUsername() {
+    void recordDownload_shouldAppendDownloadEventWithDownloaderUsername() throws IOException {
         // Arrange
         setupMockRequest(); // Setup request mock for this test
 
@@ -127,17 +199,16 @@ class AuditServiceTest {
         String originalFilename = "document.pdf";
         String storedFilename = "2024-11-09T14-30-00_document.pdf";
 
-        when(storageService.exists(anyString())).thenReturn(true);
-
         // Act
         auditService.recordDownload(fileOwner, originalFilename, storedFilename,
                 downloaderUsername, request);
+        writeQueue.flush();
 
         // Assert
-        ArgumentCaptor<String> contentCaptor = ArgumentCaptor.forClass(String.class);
-        verify(storageService).append(eq("/audit/joe.bloggs.csv"), contentCaptor.capture());
+        List<Path> segments = listSegments(fileOwner);
+        assertThat(segments).hasSize(1);
 
-        String csvContent = contentCaptor.getValue();
+        String csvContent = Files.readString(segments.get(0), StandardCharsets.UTF_8);
         assertThat(csvContent).contains("DOWNLOAD");
         assertThat(csvContent).contains("document.pdf");
         assertThat(csvContent).contains(downloaderUsername);
@@ -145,10 +216,286 @@ class AuditServiceTest {
         assertThat(csvContent).doesNotContain("1024000");
     }
 
+    @Test
+    void recordUpload_shouldCompactSegmentsIntoBaseFileAtThreshold() throws IOException {
+        // Arrange
+        setupMockRequest(); // Setup request mock for this test
+        config.getAudit().setCompactionThreshold(3);
+
+        String username = "joe.bloggs";
+
+        // Act - one segment per flush
+        for (int i = 0; i < 3; i++) {
+            auditService.recordUpload(username,
+                    uploadMetadata("file" + i + ".pdf", "2024-11-09T14-30-0" + i + "_file" + i + ".pdf"), request);
+            writeQueue.flush();
+        }
+
+        // Assert - segments composed onto a base file with a single header
+        assertThat(listSegments(username)).isEmpty();
+
+        String baseContent = Files.readString(auditDir.resolve(username + ".csv"), StandardCharsets.UTF_8);
+        assertThat(baseContent).startsWith(HEADER.strip());
+        assertThat(baseContent.lines().filter(line -> line.startsWith("event_id"))).hasSize(1);
+        assertThat(baseContent.lines()).hasSize(4);
+
+        List<AuditEvent> results = auditService.searchAllAudit(SearchCriteria.builder().build());
+        assertThat(results).extracting(AuditEvent::getFilename)
+                .containsExactlyInAnyOrder("file0.pdf", "file1.pdf", "file2.pdf");
+    }
+
+    @Test
+    void compact_shouldNotOverwriteBaseFileCreatedByAnotherInstance() throws IOException {
+        // Arrange - a segment that another instance compacts while this one is listing it
+        auditLogStore.append("joe.bloggs", List.of(AuditEvent.builder()
+                .eventId("uuid1").eventType("UPLOAD").timestamp(Instant.parse("2024-11-09T14:30:00Z"))
+                .username("joe.bloggs").filename("document.pdf").storedAs("s-document.pdf")
+                .actorUsername("joe.bloggs").build()));
+        AuditLogStore otherInstance = new AuditLogStore(new LocalStorageService(), config);
+        doAnswer(invocation -> {
+            Object listed = invocation.callRealMethod();
+            otherInstance.compact("joe.bloggs");
+            return listed;
+        }).doCallRealMethod().when(storageService).listFiles(config.getAuditIndexPath() + "/joe.bloggs/");
+
+        // Act
+        auditLogStore.compact("joe.bloggs");
+
+        // Assert - the other instance's compacted base survives, with the event once
+        String baseContent = Files.readString(auditDir.resolve("joe.bloggs.csv"), StandardCharsets.UTF_8);
+        assertThat(baseContent.lines()).hasSize(2);
+        assertThat(auditLogStore.load("joe.bloggs")).extracting(AuditEvent::getEventId).containsExactly("uuid1");
+    }
+
+    @Test
+    void compact_shouldOnlyComposeOwnSegmentsWhenAnotherUsernameSharesPrefix() throws IOException {
+        // Arrange - list by plain string prefix, as GCS does
+        String root = config.getAuditIndexPath();
+        doAnswer(invocation -> {
+            String prefix = invocation.getArgument(0);
+            List<String> all = new LocalStorageService().listFiles(root);
+            return all.stream().filter(path -> path.startsWith(prefix)).toList();
+        }).when(storageService).listFiles(anyString());
+        for (String user : List.of("joe", "joe.bloggs")) {
+            auditLogStore.append(user, List.of(AuditEvent.builder()
+                    .eventId("uuid-" + user).eventType("UPLOAD").timestamp(Instant.parse("2024-11-09T14:30:00Z"))
+                    .username(user).filename("document.pdf").storedAs("s-document.pdf")
+                    .actorUsername(user).build()));
+        }
+
+        // Act
+        auditLogStore.compact("joe");
+
+        // Assert - joe.bloggs' segment is left alone and not merged into joe's log
+        assertThat(listSegments("joe")).isEmpty();
+        assertThat(listSegments("joe.bloggs")).hasSize(1);
+        assertThat(auditLogStore.load("joe")).extracting(AuditEvent::getEventId).containsExactly("uuid-joe");
+        verify(storageService, never()).listFiles(root + "/joe");
+    }
+
+    @Test
+    void recordUpload_shouldNotWriteToStorageBeforeFlush() throws IOException {
+        // Arrange
+        setupMockRequest(); // Setup request mock for this test
+
+        // Act
+        auditService.recordUpload("joe.bloggs",
+                uploadMetadata("document.pdf", "2024-11-09T14-30-00_document.pdf"), request);
+
+        // Assert - only the local WAL has been touched
+        verify(storageService, never()).writeString(anyString(), anyString());
+        assertThat(listSegments("joe.bloggs")).isEmpty();
+        assertThat(Files.readString(writeQueue.walFile(), StandardCharsets.UTF_8))
+                .contains("document.pdf");
+    }
+
+    @Test
+    void flush_shouldCoalesceQueuedEventsIntoOneSegmentPerUser() throws IOException {
+        // Arrange
+        setupMockRequest(); // Setup request mock for this test
+
+        auditService.recordUpload("joe.bloggs", uploadMetadata("a.pdf", "2024-11-09T14-30-00_a.pdf"), request);
+        auditService.recordUpload("joe.bloggs", uploadMetadata("b.pdf", "2024-11-09T14-30-01_b.pdf"), request);
+        auditService.recordUpload("jane.smith", uploadMetadata("c.pdf", "2024-11-09T14-30-02_c.pdf"), request);
+
+        // Act
+        writeQueue.flush();
+
+        // Assert
+        List<Path> joeSegments = listSegments("joe.bloggs");
+        assertThat(joeSegments).hasSize(1);
+        assertThat(Files.readString(joeSegments.get(0), StandardCharsets.UTF_8).lines()).hasSize(2);
+        assertThat(listSegments("jane.smith")).hasSize(1);
+        assertThat(Files.size(writeQueue.walFile())).isZero(); // WAL truncated once written
+    }
+
+    @Test
+    void searchAllAudit_shouldIncludeEventsNotYetFlushed() {
+        // Arrange
+        setupMockRequest(); // Setup request mock for this test
+
+        auditService.recordUpload("joe.bloggs",
+                uploadMetadata("queued.pdf", "2024-11-09T14-30-00_queued.pdf"), request);
+
+        // Act
+        List<AuditEvent> results = auditService.searchAllAudit(SearchCriteria.builder().build());
+
+        // Assert
+        assertThat(results).extracting(AuditEvent::getFilename).containsExactly("queued.pdf");
+        assertThat(auditService.getOriginalFilename("joe.bloggs", "2024-11-09T14-30-00_queued.pdf"))
+                .isEqualTo("queued.pdf");
+    }
+
+    @Test
+    void start_shouldReplayEventsLeftInWriteAheadLogOfCrashedInstance() throws IOException {
+        // Arrange - another instance accepted an event but crashed before writing it
+        setupMockRequest(); // Setup request mock for this test
+        auditService.recordUpload("joe.bloggs",
+                uploadMetadata("crashed.pdf", "2024-11-09T14-30-00_crashed.pdf"), request);
+        Path orphan = tempDir.resolve("audit-wal-crashed.csv");
+        Files.copy(writeQueue.walFile(), orphan);
+        Files.setLastModifiedTime(orphan, FileTime.from(Instant.now().minus(Duration.ofMinutes(5))));
+
+        // Act
+        AuditWriteQueue restarted = new AuditWriteQueue(auditLogStore, partitionStore, config);
+        restarted.start();
+        restarted.flush();
+        restarted.shutdown();
+
+        // Assert - replayed once, and the crashed instance's WAL is gone
+        List<Path> segments = listSegments("joe.bloggs");
+        assertThat(segments).hasSize(1);
+        assertThat(Files.readString(segments.get(0), StandardCharsets.UTF_8)).contains("crashed.pdf");
+        assertThat(orphan).doesNotExist();
+        assertThat(restarted.walFile()).doesNotExist();
+    }
+
+    @Test
+    void start_shouldNotReplayWriteAheadLogOfRunningInstance() throws IOException {
+        // Arrange - this instance has an event in its WAL that it has not written yet
+        setupMockRequest(); // Setup request mock for this test
+        auditService.recordUpload("joe.bloggs",
+                uploadMetadata("queued.pdf", "2024-11-09T14-30-00_queued.pdf"), request);
+
+        // Act - a second instance starts on the same volume
+        AuditWriteQueue other = new AuditWriteQueue(auditLogStore, partitionStore, config);
+        other.start();
+        other.flush();
+        other.shutdown();
+
+        // Assert - each instance has its own WAL, and this one's is left alone
+        assertThat(other.walFile()).isNotEqualTo(writeQueue.walFile());
+        assertThat(listSegments("joe.bloggs")).isEmpty();
+        assertThat(Files.readString(writeQueue.walFile(), StandardCharsets.UTF_8)).contains("queued.pdf");
+    }
+
+    @Test
+    void flush_shouldDropWrittenPrefixOfWriteAheadLogWhileEventsAreInFlight() throws IOException {
+        // Arrange - lots of written events ahead of one whose write keeps failing
+        lenient().doThrow(new StorageException("storage unavailable"))
+                .when(storageService).writeString(argThat(path -> path.contains("stuck")), anyString());
+        String padding = "x".repeat(200);
+        for (int i = 0; i < 400; i++) {
+            writeQueue.submit(AuditEvent.builder()
+                    .eventId("joe-" + i).eventType("UPLOAD").timestamp(Instant.parse("2024-11-09T14:30:00Z"))
+                    .username("joe.bloggs").filename("written-" + i + padding + ".pdf").storedAs("s-written-" + i + ".pdf")
+                    .actorUsername("joe.bloggs").build());
+        }
+        writeQueue.submit(AuditEvent.builder()
+                .eventId("stuck-1").eventType("UPLOAD").timestamp(Instant.parse("2024-11-09T14:31:00Z"))
+                .username("stuck").filename("in-flight.pdf").storedAs("s-in-flight.pdf")
+                .actorUsername("stuck").build());
+
+        // Act
+        writeQueue.flush();
+        writeQueue.submit(AuditEvent.builder()
+                .eventId("stuck-2").eventType("UPLOAD").timestamp(Instant.parse("2024-11-09T14:32:00Z"))
+                .username("stuck").filename("later.pdf").storedAs("s-later.pdf")
+                .actorUsername("stuck").build());
+
+        // Assert - only the unwritten events remain, and later appends follow them
+        String wal = Files.readString(writeQueue.walFile(), StandardCharsets.UTF_8);
+        assertThat(wal).doesNotContain("written-");
+        assertThat(wal.lines()).hasSize(2);
+        assertThat(wal).contains("in-flight.pdf", "later.pdf");
+        assertThat(auditLogStore.parseSegment(new StringReader(wal)))
+                .extracting(AuditEvent::getEventId).containsExactly("stuck-1", "stuck-2");
+    }
+
+    @Test
+    void shutdown_shouldFlushQueuedEvents() throws IOException {
+        // Arrange
+        setupMockRequest(); // Setup request mock for this test
+        auditService.recordUpload("joe.bloggs",
+                uploadMetadata("document.pdf", "2024-11-09T14-30-00_document.pdf"), request);
+
+        // Act
+        writeQueue.shutdown();
+        writeQueue = new AuditWriteQueue(auditLogStore, partitionStore, config); // fresh instance for tearDown
+        writeQueue.start();
+
+        // Assert
+        assertThat(listSegments("joe.bloggs")).hasSize(1);
+    }
+
+    @Test
+    void recordUpload_shouldKeepEventForRetryWhenSynchronousWriteFailsAfterWalAppend() throws IOException {
+        // Arrange - a full queue forces a synchronous write, which fails
+        setupMockRequest(); // Setup request mock for this test
+        writeQueue.shutdown();
+        config.getAudit().setQueueCapacity(1);
+        writeQueue = new AuditWriteQueue(auditLogStore, partitionStore, config);
+        writeQueue.start();
+        auditService = new AuditService(auditLogStore, writeQueue, new FilenameIndex(auditLogStore, writeQueue, config),
+                partitionStore, config);
+        auditService.recordUpload("joe.bloggs", uploadMetadata("a.pdf", "2024-11-09T14-30-00_a.pdf"), request);
+        doThrow(new StorageException("storage unavailable")).doCallRealMethod()
+                .when(storageService).writeString(argThat(path -> path.contains("joe.bloggs")), anyString());
+
+        // Act - the event is in the WAL, so the upload is not failed
+        auditService.recordUpload("joe.bloggs", uploadMetadata("b.pdf", "2024-11-09T14-30-01_b.pdf"), request);
+        writeQueue.flush();
+
+        // Assert - written by the retry, not lost
+        List<AuditEvent> results = auditLogStore.load("joe.bloggs");
+        assertThat(results).extracting(AuditEvent::getFilename).containsExactlyInAnyOrder("a.pdf", "b.pdf");
+        assertThat(writeQueue.pendingUsernames()).isEmpty();
+    }
+
+    @Test
+    void recordUpload_shouldDiscardEventWhenNeitherWalNorStorageAcceptIt() throws IOException {
+        // Arrange - the WAL is closed and storage writes fail
+        setupMockRequest(); // Setup request mock for this test
+        writeQueue.shutdown();
+        doThrow(new StorageException("storage unavailable"))
+                .when(storageService).writeString(argThat(path -> path.contains("joe.bloggs")), anyString());
+
+        // Act & Assert - the caller sees the failure
+        assertThatThrownBy(() -> auditService.recordUpload("joe.bloggs",
+                uploadMetadata("a.pdf", "2024-11-09T14-30-00_a.pdf"), request))
+                .hasCauseInstanceOf(StorageException.class);
+
+        // Assert - and the event is not kept to be written later
+        assertThat(writeQueue.pendingEvents("joe.bloggs")).isEmpty();
+        writeQueue.flush();
+        verify(storageService, times(1)).writeString(argThat(path -> path.contains("joe.bloggs")), anyString());
+    }
+
+    @Test
+    void start_shouldRequireWalPath() {
+        // Arrange
+        config.getAudit().setWalPath(null);
+        AuditWriteQueue unconfigured = new AuditWriteQueue(auditLogStore, partitionStore, config);
+
+        // Act & Assert
+        assertThatThrownBy(unconfigured::start)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("wal-path");
+    }
+
     @Test
     void searchAllAudit_shouldReturnEmptyListWhenNoAuditFiles() {
         // Arrange
-        when(storageService.listFiles(anyString())).thenReturn(List.of());
         SearchCriteria criteria = SearchCriteria.builder().build();
 
         // Act
@@ -159,17 +506,47 @@ class AuditServiceTest {
     }
 
     @Test
-    void searchAllAudit_shouldFilterByFilename() {
+    void searchAllAudit_shouldIncludeBaseFileAndPendingSegments() throws IOException {
+        // Arrange
+        writeBaseFile("joe.bloggs", HEADER
+                + "uuid1,UPLOAD,2024-11-09T14:30:00Z,joe.bloggs,base.pdf,2024-11-09T14-30-00_base.pdf,1024000,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n");
+        Files.createDirectories(auditDir.resolve("joe.bloggs"));
+        Files.writeString(auditDir.resolve("joe.bloggs/0001731166200000-a.csv"),
+                "uuid2,UPLOAD,2024-11-09T15:30:00Z,joe.bloggs,segment.pdf,2024-11-09T15-30-00_segment.pdf,1024000,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n",
+                StandardCharsets.UTF_8);
+
+        // Act
+        List<AuditEvent> results = auditService.searchAllAudit(SearchCriteria.builder().build());
+
+        // Assert - user listed once, events from both sources
+        assertThat(results).extracting(AuditEvent::getFilename)
+                .containsExactly("segment.pdf", "base.pdf");
+    }
+
+    @Test
+    void searchAllAudit_shouldIgnoreDuplicatesLeftByInterruptedCompaction() throws IOException {
+        // Arrange - segment already composed into base but not yet deleted
+        String record = "uuid1,UPLOAD,2024-11-09T14:30:00Z,joe.bloggs,document.pdf,2024-11-09T14-30-00_document.pdf,1024000,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n";
+        writeBaseFile("joe.bloggs", HEADER + record);
+        Files.createDirectories(auditDir.resolve("joe.bloggs"));
+        Files.writeString(auditDir.resolve("joe.bloggs/0001731162600000-a.csv"), record, StandardCharsets.UTF_8);
+
+        // Act
+        List<AuditEvent> results = auditService.searchAllAudit(SearchCriteria.builder().build());
+
+        // Assert
+        assertThat(results).hasSize(1);
+    }
+
+    @Test
+    void searchAllAudit_shouldFilterByFilename() throws IOException {
         // Arrange
         String csvContent = """
                 event_id,event_type,timestamp,username,filename,stored_as,file_size,content_type,ip_address,user_agent,session_id,actor_username
                 uuid1,UPLOAD,2024-11-09T14:30:00Z,joe.bloggs,document.pdf,2024-11-09T14-30-00_document.pdf,1024000,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs
                 uuid2,UPLOAD,2024-11-09T15:00:00Z,joe.bloggs,report.xlsx,2024-11-09T15-00-00_report.xlsx,2048000,application/vnd.openxmlformats-officedocument.spreadsheetml.sheet,192.168.1.1,Mozilla/5.0,session123,joe.bloggs
                 """;
-
-        when(storageService.listFiles("/audit")).thenReturn(List.of("/audit/joe.bloggs.csv"));
-        when(storageService.exists("/audit/joe.bloggs.csv")).thenReturn(true);
-        when(storageService.readString("/audit/joe.bloggs.csv")).thenReturn(csvContent);
+        writeBaseFile("joe.bloggs", csvContent);
 
         SearchCriteria criteria = SearchCriteria.builder()
                 .filename("document")
@@ -184,7 +561,7 @@ class AuditServiceTest {
     }
 
     @Test
-    void searchAllAudit_shouldFilterByUsername() {
+    void searchAllAudit_shouldFilterByUsername() throws IOException {
         // Arrange
         String user1Csv = """
                 event_id,event_type,timestamp,username,filename,stored_as,file_size,content_type,ip_address,user_agent,session_id,actor_username
@@ -196,12 +573,8 @@ class AuditServiceTest {
                 uuid2,UPLOAD,2024-11-09T15:00:00Z,jane.smith,report.xlsx,2024-11-09T15-00-00_report.xlsx,2048000,application/vnd.openxmlformats-officedocument.spreadsheetml.sheet,192.168.1.2,Mozilla/5.0,session456,jane.smith
                 """;
 
-        when(storageService.listFiles("/audit")).thenReturn(
-                List.of("/audit/joe.bloggs.csv", "/audit/jane.smith.csv"));
-        when(storageService.exists("/audit/joe.bloggs.csv")).thenReturn(true);
-        when(storageService.exists("/audit/jane.smith.csv")).thenReturn(true);
-        when(storageService.readString("/audit/joe.bloggs.csv")).thenReturn(user1Csv);
-        when(storageService.readString("/audit/jane.smith.csv")).thenReturn(user2Csv);
+        writeBaseFile("joe.bloggs", user1Csv);
+        writeBaseFile("jane.smith", user2Csv);
 
         SearchCriteria criteria = SearchCriteria.builder()
                 .username("joe.bloggs")
@@ -216,7 +589,7 @@ class AuditServiceTest {
     }
 
     @Test
-    void searchAllAudit_shouldFilterByDateRange() {
+    void searchAllAudit_shouldFilterByDateRange() throws IOException {
         // Arrange
         String csvContent = """
                 event_id,event_type,timestamp,username,filename,stored_as,file_size,content_type,ip_address,user_agent,session_id,actor_username
@@ -224,10 +597,7 @@ class AuditServiceTest {
                 uuid2,UPLOAD,2024-11-09T15:00:00Z,joe.bloggs,new-file.xlsx,2024-11-09T15-00-00_new-file.xlsx,2048000,application/vnd.openxmlformats-officedocument.spreadsheetml.sheet,192.168.1.1,Mozilla/5.0,session123,joe.bloggs
                 uuid3,UPLOAD,2024-11-15T10:00:00Z,joe.bloggs,future-file.txt,2024-11-15T10-00-00_future-file.txt,512000,text/plain,192.168.1.1,Mozilla/5.0,session123,joe.bloggs
                 """;
-
-        when(storageService.listFiles("/audit")).thenReturn(List.of("/audit/joe.bloggs.csv"));
-        when(storageService.exists("/audit/joe.bloggs.csv")).thenReturn(true);
-        when(storageService.readString("/audit/joe.bloggs.csv")).thenReturn(csvContent);
+        writeBaseFile("joe.bloggs", csvContent);
 
         SearchCriteria criteria = SearchCriteria.builder()
                 .startDate(LocalDate.of(2024, 11, 8))
@@ -243,7 +613,407 @@ class AuditServiceTest {
     }
 
     @Test
-    void searchAllAudit_shouldSortByTimestampDescending() {
+    void searchPage_shouldFilterCachedEventsByDateRange() throws IOException {
+        // Arrange - partitions are ready, but pages are served from the per-user cache
+        String csvContent = HEADER
+                + "uuid1,UPLOAD,2024-11-05T12:00:00Z,joe.bloggs,old-file.pdf,s-old.pdf,1,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n"
+                + "uuid2,UPLOAD,2024-11-08T12:00:00Z,joe.bloggs,first-day.pdf,s-first.pdf,1,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n"
+                + "uuid3,UPLOAD,2024-11-10T12:00:00Z,joe.bloggs,last-day.pdf,s-last.pdf,1,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n"
+                + "uuid4,UPLOAD,2024-11-15T12:00:00Z,joe.bloggs,future-file.pdf,s-future.pdf,1,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n";
+        writeBaseFile("joe.bloggs", csvContent);
+        partitionStore.backfill();
+        clearInvocations(storageService);
+
+        SearchCriteria criteria = SearchCriteria.builder()
+                .startDate(LocalDate.of(2024, 11, 8))
+                .endDate(LocalDate.of(2024, 11, 10))
+                .build();
+
+        // Act
+        AuditPage results = auditService.searchPage(criteria, 0, 10);
+
+        // Assert - both boundary days included
+        assertThat(results.getEvents()).extracting(AuditEvent::getFilename)
+                .containsExactly("last-day.pdf", "first-day.pdf");
+        assertThat(results.getTotalResults()).isEqualTo(2);
+        assertThat(results.getEvents().get(0).getEpochDay())
+                .isEqualTo(LocalDate.ofInstant(results.getEvents().get(0).getTimestamp(), ZoneId.systemDefault()).toEpochDay());
+        verify(storageService, never()).listFiles(argThat(path -> path.contains("_partitions")));
+    }
+
+    @Test
+    void searchAllAudit_shouldPruneDatePartitionsOutsideRange() throws IOException {
+        // Arrange - partitions backfilled from the base file
+        String csvContent = HEADER
+                + "uuid1,UPLOAD,2024-10-05T14:30:00Z,joe.bloggs,october.pdf,2024-10-05T14-30-00_october.pdf,1024000,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n"
+                + "uuid2,UPLOAD,2024-11-09T15:00:00Z,joe.bloggs,november.pdf,2024-11-09T15-00-00_november.pdf,1024000,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n";
+        String basePath = writeBaseFile("joe.bloggs", csvContent);
+        SearchCriteria november = SearchCriteria.builder()
+                .startDate(LocalDate.of(2024, 11, 1))
+                .endDate(LocalDate.of(2024, 11, 30))
+                .build();
+        partitionStore.backfill();
+        clearInvocations(storageService);
+
+        // Act
+        List<AuditEvent> results = auditService.searchAllAudit(november);
+
+        // Assert - only the November chunk is opened, the audit log is not read
+        assertThat(results).extracting(AuditEvent::getFilename).containsExactly("november.pdf");
+        verify(storageService, times(1)).readFile(anyString());
+        verify(storageService, never()).openReader(basePath);
+    }
+
+    @Test
+    void searchAllAudit_shouldFilterDatePartitionsByTypeAndUserAndShareValuesAcrossUsers() throws IOException {
+        // Arrange
+        writeBaseFile("joe.bloggs", HEADER
+                + "j1,UPLOAD,2024-11-01T10:00:00Z,joe.bloggs,j1.pdf,s-j1.pdf,1,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n"
+                + "j2,DOWNLOAD,2024-11-02T10:00:00Z,joe.bloggs,j1.pdf,s-j1.pdf,,,192.168.1.1,Mozilla/5.0,session456,admin\n");
+        writeBaseFile("jane.smith", HEADER
+                + "s1,DOWNLOAD,2024-11-03T10:00:00Z,jane.smith,s1.pdf,s-s1.pdf,,,192.168.1.2,Mozilla/5.0,session789,admin\n");
+        partitionStore.backfill();
+        SearchCriteria joeDownloadsInNovember = SearchCriteria.builder()
+                .startDate(LocalDate.of(2024, 11, 1))
+                .endDate(LocalDate.of(2024, 11, 30))
+                .eventType("DOWNLOAD")
+                .username("joe.bloggs")
+                .build();
+        SearchCriteria unknownUserInNovember = SearchCriteria.builder()
+                .startDate(LocalDate.of(2024, 11, 1))
+                .endDate(LocalDate.of(2024, 11, 30))
+                .username("nobody")
+                .build();
+
+        // Act
+        List<AuditEvent> joeDownloads = auditService.searchAllAudit(joeDownloadsInNovember);
+        List<AuditEvent> unknownUser = auditService.searchAllAudit(unknownUserInNovember);
+        config.getAudit().setPartitionedSearch(false);
+        List<AuditEvent> cached = auditService.searchAllAudit(SearchCriteria.builder().eventType("DOWNLOAD").build());
+
+        // Assert - filters work on the dictionary-encoded chunk columns
+        assertThat(joeDownloads).extracting(AuditEvent::getEventId).containsExactly("j2");
+        assertThat(joeDownloads.get(0).getSessionId()).isEqualTo("session456");
+        assertThat(unknownUser).isEmpty();
+        // Repeated values resolve to one instance across users' logs; client-supplied ones stay per-log
+        assertThat(cached).hasSize(2);
+        assertThat(cached.get(0).getActorUsername()).isSameAs(cached.get(1).getActorUsername());
+        assertThat(cached.get(0).getUserAgent()).isEqualTo(cached.get(1).getUserAgent());
+    }
+
+    @Test
+    void searchAllAudit_shouldPickUpSegmentsWrittenByAnotherInstanceWithoutRereadingBase() throws IOException {
+        // Arrange - cached, then another instance appends to the same user's log
+        config.getAudit().setRevalidateInterval(Duration.ZERO);
+        String basePath = writeBaseFile("joe.bloggs", HEADER
+                + "uuid1,UPLOAD,2024-11-09T14:30:00Z,joe.bloggs,first.pdf,s-first.pdf,1,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n");
+        assertThat(auditService.searchAllAudit(SearchCriteria.builder().build())).hasSize(1);
+
+        new AuditLogStore(new LocalStorageService(), config).append("joe.bloggs", List.of(AuditEvent.builder()
+                .eventId("uuid2").eventType("UPLOAD").timestamp(Instant.parse("2024-11-09T15:30:00Z"))
+                .username("joe.bloggs").filename("second.pdf").storedAs("s-second.pdf")
+                .actorUsername("joe.bloggs").build()));
+
+        // Act
+        List<AuditEvent> results = auditService.searchAllAudit(SearchCriteria.builder().build());
+
+        // Assert - only the new segment is read
+        assertThat(results).extracting(AuditEvent::getFilename).containsExactly("second.pdf", "first.pdf");
+        verify(storageService, times(1)).openReader(basePath);
+    }
+
+    @Test
+    void searchAllAudit_shouldReloadUserWhenBaseFileIsRewrittenInStorage() throws IOException {
+        // Arrange
+        config.getAudit().setRevalidateInterval(Duration.ZERO);
+        String basePath = writeBaseFile("joe.bloggs", HEADER
+                + "uuid1,UPLOAD,2024-11-09T14:30:00Z,joe.bloggs,first.pdf,s-first.pdf,1,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n");
+        auditService.searchAllAudit(SearchCriteria.builder().build());
+        auditService.searchAllAudit(SearchCriteria.builder().build());
+
+        // Act - rewritten rather than appended to, e.g. restored from a backup
+        writeBaseFile("joe.bloggs", HEADER
+                + "uuid2,UPLOAD,2024-11-09T15:30:00Z,joe.bloggs,x.pdf,s-x.pdf,1,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n");
+        List<AuditEvent> results = auditService.searchAllAudit(SearchCriteria.builder().build());
+
+        // Assert - unchanged log was reused, the changed one re-read in full once
+        assertThat(results).extracting(AuditEvent::getFilename).containsExactly("x.pdf");
+        verify(storageService, times(2)).openReader(basePath);
+    }
+
+    @Test
+    void searchAllAudit_shouldReadOnlyAppendedTailWhenAnotherInstanceCompacts() throws IOException {
+        // Arrange - cached, then another instance appends and compacts onto the base file
+        config.getAudit().setRevalidateInterval(Duration.ZERO);
+        String basePath = writeBaseFile("joe.bloggs", HEADER
+                + "uuid1,UPLOAD,2024-11-09T14:30:00Z,joe.bloggs,first.pdf,s-first.pdf,1,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n");
+        long cachedSize = Files.size(Path.of(basePath));
+        assertThat(auditService.searchAllAudit(SearchCriteria.builder().build())).hasSize(1);
+
+        AuditLogStore otherInstance = new AuditLogStore(new LocalStorageService(), config);
+        otherInstance.append("joe.bloggs", List.of(AuditEvent.builder()
+                .eventId("uuid2").eventType("UPLOAD").timestamp(Instant.parse("2024-11-09T15:30:00Z"))
+                .username("joe.bloggs").filename("second.pdf").storedAs("s-second.pdf")
+                .actorUsername("joe.bloggs").build()));
+        otherInstance.compact("joe.bloggs");
+
+        // Act
+        List<AuditEvent> results = auditService.searchAllAudit(SearchCriteria.builder().build());
+
+        // Assert - the base file is not re-read from the start
+        assertThat(results).extracting(AuditEvent::getFilename).containsExactly("second.pdf", "first.pdf");
+        verify(storageService, times(1)).openReader(basePath);
+        verify(storageService).readRange(eq(basePath), eq(cachedSize - 1), anyLong());
+    }
+
+    @Test
+    void searchAllAudit_shouldTrustCachedLogWithinRevalidateInterval() throws IOException {
+        // Arrange
+        String basePath = writeBaseFile("joe.bloggs", HEADER
+                + "uuid1,UPLOAD,2024-11-09T14:30:00Z,joe.bloggs,first.pdf,s-first.pdf,1,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n");
+        auditService.searchAllAudit(SearchCriteria.builder().build());
+        clearInvocations(storageService);
+
+        // Act
+        auditService.searchAllAudit(SearchCriteria.builder().build());
+
+        // Assert - not re-read, and not even checked for changes
+        verify(storageService, never()).stat(anyString());
+        verify(storageService, never()).openReader(basePath);
+    }
+
+    @Test
+    void searchAllAudit_shouldUsePerUserLogsUntilPartitionsAreBackfilled() throws IOException {
+        // Arrange
+        String basePath = writeBaseFile("joe.bloggs", HEADER
+                + "uuid1,UPLOAD,2024-11-09T15:00:00Z,joe.bloggs,november.pdf,s-november.pdf,1,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n");
+        SearchCriteria november = SearchCriteria.builder()
+                .startDate(LocalDate.of(2024, 11, 1))
+                .endDate(LocalDate.of(2024, 11, 30))
+                .build();
+
+        // Act
+        List<AuditEvent> results = auditService.searchAllAudit(november);
+
+        // Assert - the search never builds or touches the partitions itself
+        assertThat(results).extracting(AuditEvent::getFilename).containsExactly("november.pdf");
+        verify(storageService).openReader(basePath);
+        verify(storageService, never()).writeFile(anyString(), any(), anyLong());
+        verify(storageService, never()).delete(anyString());
+        assertThat(partitionStore.isReady()).isFalse();
+    }
+
+    @Test
+    void flush_shouldRetryOnlyTheFailedPartitionChunk() {
+        // Arrange
+        setupMockRequest(); // Setup request mock for this test
+        partitionStore.backfill();
+        auditService.recordUpload("joe.bloggs", uploadMetadata("kept.pdf", "2024-11-09T14-30-00_kept.pdf"), request);
+        writeQueue.flush();
+        doThrow(new StorageException("GCS unavailable")).doCallRealMethod()
+                .when(storageService).writeFile(anyString(), any(), anyLong());
+        SearchCriteria today = SearchCriteria.builder().startDate(LocalDate.now()).build();
+
+        // Act
+        auditService.recordUpload("joe.bloggs", uploadMetadata("retried.pdf", "2024-11-09T14-30-01_retried.pdf"), request);
+        writeQueue.flush(); // the chunk write fails, then succeeds on the retry at the end of the flush
+        boolean readyAfterRetry = partitionStore.isReady();
+
+        // Assert - no partition objects were deleted, and both events are found in the partitions
+        verify(storageService, never()).delete(argThat((String path) -> path.endsWith(".col")));
+        assertThat(readyAfterRetry).isTrue();
+        assertThat(auditService.searchAllAudit(today)).extracting(AuditEvent::getFilename)
+                .containsExactlyInAnyOrder("kept.pdf", "retried.pdf");
+    }
+
+    @Test
+    void searchAllAudit_shouldUsePerUserLogsWhileAPartitionChunkAwaitsRetry() {
+        // Arrange
+        setupMockRequest(); // Setup request mock for this test
+        partitionStore.backfill();
+        doThrow(new StorageException("GCS unavailable")).when(storageService).writeFile(anyString(), any(), anyLong());
+        auditService.recordUpload("joe.bloggs", uploadMetadata("pending.pdf", "2024-11-09T14-30-00_pending.pdf"), request);
+        writeQueue.flush();
+
+        // Act
+        boolean ready = partitionStore.isReady();
+        List<AuditEvent> results = auditService.searchAllAudit(SearchCriteria.builder().startDate(LocalDate.now()).build());
+
+        // Assert
+        assertThat(ready).isFalse();
+        assertThat(results).extracting(AuditEvent::getFilename).containsExactly("pending.pdf");
+    }
+
+    @Test
+    void searchAllAudit_shouldBackfillAgainWhenAnotherInstanceRemovesTheReadyMarker() throws Exception {
+        // Arrange
+        setupMockRequest(); // Setup request mock for this test
+        config.getAudit().setRevalidateInterval(Duration.ZERO);
+        partitionStore.backfill();
+        auditService.recordUpload("joe.bloggs", uploadMetadata("kept.pdf", "2024-11-09T14-30-00_kept.pdf"), request);
+        writeQueue.flush();
+        Path marker = auditDir.resolve("_partitions").resolve("_ready");
+        assertThat(partitionStore.isReady()).isTrue();
+
+        // Act - another instance failed to write a chunk and removed the marker
+        Files.delete(marker);
+        boolean readyWithoutMarker = partitionStore.isReady();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!partitionStore.isReady() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        // Assert - searches stop trusting the partitions until the backfill has rewritten the marker
+        assertThat(readyWithoutMarker).isFalse();
+        assertThat(partitionStore.isReady()).isTrue();
+        assertThat(marker).exists();
+        assertThat(auditService.searchAllAudit(SearchCriteria.builder().startDate(LocalDate.now()).build()))
+                .extracting(AuditEvent::getFilename).containsExactly("kept.pdf");
+    }
+
+    @Test
+    void searchAllAudit_shouldIncludeNewlyWrittenEventsInDatePartitions() {
+        // Arrange
+        setupMockRequest(); // Setup request mock for this test
+        partitionStore.backfill();
+        SearchCriteria today = SearchCriteria.builder()
+                .startDate(LocalDate.now())
+                .endDate(LocalDate.now())
+                .build();
+        assertThat(auditService.searchAllAudit(today)).isEmpty();
+
+        // Act
+        auditService.recordUpload("joe.bloggs",
+                uploadMetadata("queued.pdf", "2024-11-09T14-30-00_queued.pdf"), request);
+        List<AuditEvent> beforeFlush = auditService.searchAllAudit(today);
+        writeQueue.flush();
+        List<AuditEvent> afterFlush = auditService.searchAllAudit(today);
+
+        // Assert - visible while queued, and exactly once after reaching the partitions
+        assertThat(beforeFlush).extracting(AuditEvent::getFilename).containsExactly("queued.pdf");
+        assertThat(afterFlush).extracting(AuditEvent::getFilename).containsExactly("queued.pdf");
+        assertThat(writeQueue.pendingUsernames()).isEmpty();
+    }
+
+    @Test
+    void searchPage_shouldMergeUsersNewestFirstAcrossPages() throws IOException {
+        // Arrange - interleaved uploads for two users, plus a download to be filtered out
+        writeBaseFile("joe.bloggs", HEADER
+                + "j1,UPLOAD,2024-11-01T10:00:00Z,joe.bloggs,j1.pdf,s-j1.pdf,1,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n"
+                + "j2,UPLOAD,2024-11-03T10:00:00Z,joe.bloggs,j2.pdf,s-j2.pdf,1,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n"
+                + "j3,DOWNLOAD,2024-11-04T10:00:00Z,joe.bloggs,j2.pdf,s-j2.pdf,,,192.168.1.1,Mozilla/5.0,session123,admin\n"
+                + "j4,UPLOAD,2024-11-05T10:00:00Z,joe.bloggs,j4.pdf,s-j4.pdf,1,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n");
+        writeBaseFile("jane.smith", HEADER
+                + "s1,UPLOAD,2024-11-02T10:00:00Z,jane.smith,s1.pdf,s-s1.pdf,1,application/pdf,192.168.1.1,Mozilla/5.0,session123,jane.smith\n"
+                + "s2,UPLOAD,2024-11-06T10:00:00Z,jane.smith,s2.pdf,s-s2.pdf,1,application/pdf,192.168.1.1,Mozilla/5.0,session123,jane.smith\n");
+        SearchCriteria uploads = SearchCriteria.builder().eventType("UPLOAD").build();
+
+        // Act
+        AuditPage first = auditService.searchPage(uploads, 0, 2);
+        AuditPage second = auditService.searchPage(uploads, 2, 2);
+        AuditPage last = auditService.searchPage(uploads, 4, 2);
+
+        // Assert
+        assertThat(first.getEvents()).extracting(AuditEvent::getEventId).containsExactly("s2", "j4");
+        assertThat(second.getEvents()).extracting(AuditEvent::getEventId).containsExactly("j2", "s1");
+        assertThat(last.getEvents()).extracting(AuditEvent::getEventId).containsExactly("j1");
+        assertThat(first.getTotalResults()).isEqualTo(5);
+    }
+
+    @Test
+    void searchAfter_shouldResumeFromCursorAcrossUsers() throws IOException {
+        // Arrange - two users with uploads at the same instant, tie broken by event ID
+        writeBaseFile("joe.bloggs", HEADER
+                + "a,UPLOAD,2024-11-01T10:00:00Z,joe.bloggs,a.pdf,s-a.pdf,1,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n"
+                + "c,UPLOAD,2024-11-03T10:00:00Z,joe.bloggs,c.pdf,s-c.pdf,1,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n");
+        writeBaseFile("jane.smith", HEADER
+                + "b,UPLOAD,2024-11-03T10:00:00Z,jane.smith,b.pdf,s-b.pdf,1,application/pdf,192.168.1.1,Mozilla/5.0,session123,jane.smith\n"
+                + "d,UPLOAD,2024-11-02T10:00:00Z,jane.smith,d.pdf,s-d.pdf,1,application/pdf,192.168.1.1,Mozilla/5.0,session123,jane.smith\n");
+        SearchCriteria all = SearchCriteria.builder().build();
+
+        // Act
+        AuditPage first = auditService.searchPage(all, 0, 2);
+        AuditPage second = auditService.searchAfter(all, AuditCursor.decode(first.getNextCursor()), 2, false);
+
+        // Assert
+        assertThat(first.getEvents()).extracting(AuditEvent::getEventId).containsExactly("c", "b");
+        assertThat(second.getEvents()).extracting(AuditEvent::getEventId).containsExactly("d", "a");
+        assertThat(second.getTotalResults()).isNull();
+        assertThat(second.getNextCursor()).isNull();
+        assertThat(AuditCursor.decode(first.getNextCursor()).getTotal()).isEqualTo(4L);
+    }
+
+    @Test
+    void searchAllAudit_shouldFindUsersWhoseNamesStartWithUnderscore() {
+        // Arrange - including users named like the internal directories, which exist too
+        for (String user : List.of("joe.bloggs", "_alice", "_partitions", "__filenames")) {
+            auditLogStore.append(user, List.of(AuditEvent.builder()
+                    .eventId("uuid-" + user).eventType("UPLOAD").timestamp(Instant.parse("2024-11-09T14:30:00Z"))
+                    .username(user).filename(user + ".pdf").storedAs("s-" + user + ".pdf")
+                    .actorUsername(user).build()));
+            auditLogStore.compact(user);
+        }
+        partitionStore.backfill();
+        assertThat(auditService.getOriginalFilename("joe.bloggs", "s-joe.bloggs.pdf")).isEqualTo("joe.bloggs.pdf");
+
+        // Act
+        List<AuditEvent> results = auditService.searchAllAudit(SearchCriteria.builder().build());
+
+        // Assert - every user found once, and internal directories are not mistaken for users
+        assertThat(results).extracting(AuditEvent::getUsername)
+                .containsExactlyInAnyOrder("joe.bloggs", "_alice", "_partitions", "__filenames");
+        assertThat(auditDir.resolve("__partitions.csv")).exists();
+        assertThat(auditDir.resolve("___filenames.csv")).exists();
+        verify(storageService, never()).listFiles(config.getAuditIndexPath());
+    }
+
+    @Test
+    void searchAllAudit_shouldKeepClientSuppliedValuesOutOfSharedDictionary() throws IOException {
+        // Arrange - IP and user agent values no other test uses
+        String loadedIp = "203.0.113." + UUID.randomUUID().toString().substring(0, 4);
+        String loadedAgent = "LoadedAgent/" + UUID.randomUUID();
+        String recordedAgent = "RecordedAgent/" + UUID.randomUUID();
+        writeBaseFile("joe.bloggs", HEADER
+                + "a,UPLOAD,2024-11-01T10:00:00Z,joe.bloggs,a.pdf,s-a.pdf,1,application/pdf," + loadedIp + "," + loadedAgent + ",session123,joe.bloggs\n");
+        setupMockRequest();
+        when(request.getHeader("User-Agent")).thenReturn(recordedAgent);
+
+        // Act
+        auditService.searchAllAudit(SearchCriteria.builder().build());
+        auditService.recordUpload("joe.bloggs", uploadMetadata("b.pdf", "s-b.pdf"), request);
+        writeQueue.flush();
+        List<AuditEvent> results = auditService.searchAllAudit(SearchCriteria.builder().build());
+
+        // Assert - still cached and returned, but never added to the process-wide dictionary
+        assertThat(results).extracting(AuditEvent::getUserAgent).containsExactly(recordedAgent, loadedAgent);
+        assertThat(results).extracting(AuditEvent::getIpAddress).contains(loadedIp);
+        assertThat(AuditStringDictionary.SHARED.idOf(loadedIp)).isEqualTo(AuditStringDictionary.NONE);
+        assertThat(AuditStringDictionary.SHARED.idOf(loadedAgent)).isEqualTo(AuditStringDictionary.NONE);
+        assertThat(AuditStringDictionary.SHARED.idOf(recordedAgent)).isEqualTo(AuditStringDictionary.NONE);
+    }
+
+    @Test
+    void searchAllAudit_shouldParseFileSizesAsLongParseLongDoes() throws IOException {
+        // Arrange
+        writeBaseFile("joe.bloggs", HEADER
+                + "a,UPLOAD,2024-11-01T10:00:00Z,joe.bloggs,a.pdf,s-a.pdf,1024,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n"
+                + "b,UPLOAD,2024-11-02T10:00:00Z,joe.bloggs,b.pdf,s-b.pdf,-1,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n"
+                + "c,UPLOAD,2024-11-03T10:00:00Z,joe.bloggs,c.pdf,s-c.pdf,9223372036854775807,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n"
+                + "d,UPLOAD,2024-11-04T10:00:00Z,joe.bloggs,d.pdf,s-d.pdf,+5,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n"
+                + "e,UPLOAD,2024-11-05T10:00:00Z,joe.bloggs,e.pdf,s-e.pdf,12kB,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n"
+                + "f,UPLOAD,2024-11-06T10:00:00Z,joe.bloggs,f.pdf,s-f.pdf,9223372036854775808,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n"
+                + "g,DOWNLOAD,2024-11-07T10:00:00Z,joe.bloggs,a.pdf,s-a.pdf,,,192.168.1.1,Mozilla/5.0,session123,admin\n");
+
+        // Act
+        List<AuditEvent> results = auditService.searchAllAudit(SearchCriteria.builder().build());
+
+        // Assert - newest first
+        assertThat(results).extracting(AuditEvent::getFileSize)
+                .containsExactly(null, null, null, 5L, Long.MAX_VALUE, -1L, 1024L);
+    }
+
+    @Test
+    void searchAllAudit_shouldSortByTimestampDescending() throws IOException {
         // Arrange
         String csvContent = """
                 event_id,event_type,timestamp,username,filename,stored_as,file_size,content_type,ip_address,user_agent,session_id,actor_username
@@ -251,10 +1021,7 @@ class AuditServiceTest {
                 uuid2,UPLOAD,2024-11-09T15:00:00Z,joe.bloggs,second.xlsx,2024-11-09T15-00-00_second.xlsx,2048000,application/vnd.openxmlformats-officedocument.spreadsheetml.sheet,192.168.1.1,Mozilla/5.0,session123,joe.bloggs
                 uuid3,UPLOAD,2024-11-09T16:00:00Z,joe.bloggs,third.txt,2024-11-09T16-00-00_third.txt,512000,text/plain,192.168.1.1,Mozilla/5.0,session123,joe.bloggs
                 """;
-
-        when(storageService.listFiles("/audit")).thenReturn(List.of("/audit/joe.bloggs.csv"));
-        when(storageService.exists("/audit/joe.bloggs.csv")).thenReturn(true);
-        when(storageService.readString("/audit/joe.bloggs.csv")).thenReturn(csvContent);
+        writeBaseFile("joe.bloggs", csvContent);
 
         SearchCriteria criteria = SearchCriteria.builder().build();
 
@@ -269,15 +1036,13 @@ class AuditServiceTest {
     }
 
     @Test
-    void getOriginalFilename_shouldReturnOriginalFromAuditRecord() {
+    void getOriginalFilename_shouldReturnOriginalFromAuditRecord() throws IOException {
         // Arrange
         String csvContent = """
                 event_id,event_type,timestamp,username,filename,stored_as,file_size,content_type,ip_address,user_agent,session_id,actor_username
                 uuid1,UPLOAD,2024-11-09T14:30:00Z,joe.bloggs,My Document.pdf,2024-11-09T14-30-00_My_Document.pdf,1024000,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs
                 """;
-
-        when(storageService.exists("/audit/joe.bloggs.csv")).thenReturn(true);
-        when(storageService.readString("/audit/joe.bloggs.csv")).thenReturn(csvContent);
+        writeBaseFile("joe.bloggs", csvContent);
 
         // Act
         String originalFilename = auditService.getOriginalFilename("joe.bloggs",
@@ -288,11 +1053,9 @@ class AuditServiceTest {
     }
 
     @Test
-    void getOriginalFilename_shouldReturnStoredFilenameIfNotFound() {
+    void getOriginalFilename_shouldReturnStoredFilenameIfNotFound() throws IOException {
         // Arrange
-        when(storageService.exists("/audit/joe.bloggs.csv")).thenReturn(true);
-        when(storageService.readString("/audit/joe.bloggs.csv")).thenReturn(
-                "event_id,event_type,timestamp,username,filename,stored_as,file_size,content_type,ip_address,user_agent,session_id,actor_username\n");
+        writeBaseFile("joe.bloggs", HEADER);
 
         // Act
         String originalFilename = auditService.getOriginalFilename("joe.bloggs",
@@ -303,16 +1066,139 @@ class AuditServiceTest {
     }
 
     @Test
-    void searchAllAudit_shouldCacheUserAuditData() {
+    void getOriginalFilename_shouldUseSnapshotWithoutReadingAuditLog() throws IOException {
+        // Arrange - first lookup builds the filename snapshot from the audit log
+        String csvContent = HEADER
+                + "uuid1,UPLOAD,2024-11-09T14:30:00Z,joe.bloggs,My Document.pdf,2024-11-09T14-30-00_My_Document.pdf,1024000,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n";
+        String basePath = writeBaseFile("joe.bloggs", csvContent);
+        auditService.getOriginalFilename("joe.bloggs", "2024-11-09T14-30-00_My_Document.pdf");
+        assertThat(auditDir.resolve("_filenames/joe.bloggs.csv")).exists();
+
+        // Act - a fresh index, as after a restart
+        FilenameIndex restarted = new FilenameIndex(auditLogStore, writeQueue, config);
+        clearInvocations(storageService);
+
+        // Assert
+        assertThat(restarted.lookup("joe.bloggs", "2024-11-09T14-30-00_My_Document.pdf"))
+                .contains("My Document.pdf");
+        verify(storageService, never()).openReader(basePath);
+    }
+
+    @Test
+    void getOriginalFilename_shouldResolveUploadsCompactedAfterSnapshot() throws IOException {
+        // Arrange
+        setupMockRequest(); // Setup request mock for this test
+        config.getAudit().setCompactionThreshold(2);
+        String basePath = writeBaseFile("joe.bloggs", HEADER
+                + "uuid1,UPLOAD,2024-11-09T14:30:00Z,joe.bloggs,old.pdf,2024-11-09T14-30-00_old.pdf,1024000,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n");
+        auditService.getOriginalFilename("joe.bloggs", "2024-11-09T14-30-00_old.pdf");
+
+        // Act - two flushes reach the threshold and compact the segments away
+        for (int i = 0; i < 2; i++) {
+            auditService.recordUpload("joe.bloggs",
+                    uploadMetadata("new" + i + ".pdf", "2024-11-10T09-00-0" + i + "_new" + i + ".pdf"), request);
+            writeQueue.flush();
+        }
+        assertThat(listSegments("joe.bloggs")).isEmpty();
+
+        FilenameIndex restarted = new FilenameIndex(auditLogStore, writeQueue, config);
+        clearInvocations(storageService);
+
+        // Assert
+        assertThat(restarted.lookup("joe.bloggs", "2024-11-10T09-00-01_new1.pdf")).contains("new1.pdf");
+        assertThat(restarted.lookup("joe.bloggs", "2024-11-09T14-30-00_old.pdf")).contains("old.pdf");
+        verify(storageService, never()).openReader(basePath);
+    }
+
+    @Test
+    void getOriginalFilename_shouldRetrySnapshotExtensionWhenAnotherInstanceChangedIt() throws IOException {
+        // Arrange
+        setupMockRequest(); // Setup request mock for this test
+        config.getAudit().setCompactionThreshold(2);
+        String basePath = writeBaseFile("joe.bloggs", HEADER
+                + "uuid1,UPLOAD,2024-11-09T14:30:00Z,joe.bloggs,old.pdf,2024-11-09T14-30-00_old.pdf,1024000,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n");
+        auditService.getOriginalFilename("joe.bloggs", "2024-11-09T14-30-00_old.pdf");
+        Path snapshot = auditDir.resolve("_filenames/joe.bloggs.csv");
+
+        // Another instance extends the snapshot just before this one composes onto it
+        lenient().doAnswer(invocation -> {
+            Files.writeString(snapshot, "2024-11-10T08-00-00_other.pdf,other.pdf\n", StandardOpenOption.APPEND);
+            Files.setLastModifiedTime(snapshot, FileTime.from(Instant.now().plusSeconds(60)));
+            return invocation.callRealMethod();
+        }).doCallRealMethod().when(storageService)
+                .composeIfUnchanged(anyList(), eq(snapshot.toString()), anyLong());
+
+        // Act
+        for (int i = 0; i < 2; i++) {
+            auditService.recordUpload("joe.bloggs",
+                    uploadMetadata("new" + i + ".pdf", "2024-11-10T09-00-0" + i + "_new" + i + ".pdf"), request);
+            writeQueue.flush();
+        }
+        verify(storageService, times(2)).composeIfUnchanged(anyList(), eq(snapshot.toString()), anyLong());
+        FilenameIndex restarted = new FilenameIndex(auditLogStore, writeQueue, config);
+        clearInvocations(storageService);
+
+        // Assert - the retried compose kept both instances' uploads in the snapshot
+        assertThat(listSegments("joe.bloggs")).isEmpty();
+        assertThat(restarted.lookup("joe.bloggs", "2024-11-10T09-00-01_new1.pdf")).contains("new1.pdf");
+        assertThat(restarted.lookup("joe.bloggs", "2024-11-10T08-00-00_other.pdf")).contains("other.pdf");
+        assertThat(restarted.lookup("joe.bloggs", "2024-11-09T14-30-00_old.pdf")).contains("old.pdf");
+        verify(storageService, never()).openReader(basePath);
+    }
+
+    @Test
+    void getOriginalFilename_shouldResolveUploadRecordedByAnotherInstance() throws IOException {
+        // Arrange
+        config.getAudit().setRevalidateInterval(Duration.ZERO);
+        String basePath = writeBaseFile("joe.bloggs", HEADER
+                + "uuid1,UPLOAD,2024-11-09T14:30:00Z,joe.bloggs,old.pdf,2024-11-09T14-30-00_old.pdf,1024000,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n");
+        FilenameIndex index = new FilenameIndex(auditLogStore, writeQueue, config);
+        assertThat(index.lookup("joe.bloggs", "2024-11-09T14-30-00_old.pdf")).contains("old.pdf");
+
+        // Act - another instance writes a segment this index has never seen
+        new AuditLogStore(new LocalStorageService(), config).append("joe.bloggs", List.of(AuditEvent.builder()
+                .eventId("uuid2").eventType("UPLOAD").timestamp(Instant.parse("2024-11-10T09:00:00Z"))
+                .username("joe.bloggs").filename("new.pdf").storedAs("2024-11-10T09-00-00_new.pdf")
+                .actorUsername("joe.bloggs").build()));
+        clearInvocations(storageService);
+
+        // Assert - found by reading only the new segment, and misses keep revalidating
+        assertThat(index.lookup("joe.bloggs", "2024-11-10T09-00-00_new.pdf")).contains("new.pdf");
+        assertThat(index.lookup("joe.bloggs", "unknown.pdf")).isEmpty();
+        assertThat(index.lookup("joe.bloggs", "unknown.pdf")).isEmpty();
+        verify(storageService, never()).openReader(basePath);
+        verify(storageService, times(3)).listFiles(anyString());
+    }
+
+    @Test
+    void getOriginalFilename_shouldNotKeepEntriesBeyondMaxEntries() throws IOException {
+        // Arrange - the user's entries alone exceed the limit
+        config.getAudit().setFilenameIndexMaxEntries(1);
+        writeBaseFile("joe.bloggs", HEADER
+                + "uuid1,UPLOAD,2024-11-09T14:30:00Z,joe.bloggs,a.pdf,s-a.pdf,1,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n");
+        FilenameIndex index = new FilenameIndex(auditLogStore, writeQueue, config);
+        String snapshotPath = auditDir.resolve("_filenames/joe.bloggs.csv").toString();
+        index.lookup("joe.bloggs", "s-a.pdf");
+        clearInvocations(storageService);
+
+        // Act
+        Optional<String> first = index.lookup("joe.bloggs", "s-a.pdf");
+        Optional<String> second = index.lookup("joe.bloggs", "s-a.pdf");
+
+        // Assert - evicted each time, so loaded from the snapshot again
+        assertThat(first).contains("a.pdf");
+        assertThat(second).contains("a.pdf");
+        verify(storageService, times(2)).openReader(snapshotPath);
+    }
+
+    @Test
+    void searchAllAudit_shouldCacheUserAuditData() throws IOException {
         // Arrange
         String csvContent = """
                 event_id,event_type,timestamp,username,filename,stored_as,file_size,content_type,ip_address,user_agent,session_id,actor_username
                 uuid1,UPLOAD,2024-11-09T14:30:00Z,joe.bloggs,document.pdf,2024-11-09T14-30-00_document.pdf,1024000,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs
                 """;
-
-        when(storageService.listFiles("/audit")).thenReturn(List.of("/audit/joe.bloggs.csv"));
-        when(storageService.exists("/audit/joe.bloggs.csv")).thenReturn(true);
-        when(storageService.readString("/audit/joe.bloggs.csv")).thenReturn(csvContent);
+        String basePath = writeBaseFile("joe.bloggs", csvContent);
 
         SearchCriteria criteria = SearchCriteria.builder().build();
 
@@ -321,11 +1207,120 @@ class AuditServiceTest {
         auditService.searchAllAudit(criteria);
 
         // Assert - should only read from storage once (subsequent calls use cache)
-        verify(storageService, times(1)).readString("/audit/joe.bloggs.csv");
+        verify(storageService, times(1)).openReader(basePath);
+    }
+
+    @Test
+    void warmCache_shouldLoadEveryUserSoSearchesDoNotReadStorage() throws Exception {
+        // Arrange
+        config.getAudit().setLoadParallelism(2);
+        String[] users = {"alice", "bob", "carol"};
+        for (String user : users) {
+            writeBaseFile(user, HEADER
+                    + "uuid-" + user + ",UPLOAD,2024-11-09T14:30:00Z," + user + ",doc.pdf,2024-11-09T14-30-00_doc.pdf,1024,application/pdf,192.168.1.1,Mozilla/5.0,session123," + user + "\n");
+        }
+
+        // Act
+        int loaded = auditService.warmCache();
+        List<AuditEvent> results = auditService.searchAllAudit(SearchCriteria.builder().build());
+
+        // Assert - each log read once, by the warm-up
+        assertThat(loaded).isEqualTo(3);
+        assertThat(results).hasSize(3);
+        for (String user : users) {
+            verify(storageService, times(1)).openReader(auditDir.resolve(user + ".csv").toString());
+        }
+    }
+
+    @Test
+    void searchAllAudit_shouldLeaveOutUsersWhoseLoadTimesOut() throws Exception {
+        // Arrange - bob's audit log cannot be read until the test releases it
+        config.getAudit().setLoadTimeout(Duration.ofSeconds(2));
+        for (String user : List.of("alice", "bob", "carol")) {
+            writeBaseFile(user, HEADER
+                    + "uuid-" + user + ",UPLOAD,2024-11-09T14:30:00Z," + user + ",doc.pdf,2024-11-09T14-30-00_doc.pdf,1024,application/pdf,192.168.1.1,Mozilla/5.0,session123," + user + "\n");
+        }
+        String slowPath = auditDir.resolve("bob.csv").toString();
+        CountDownLatch release = new CountDownLatch(1);
+        lenient().doAnswer(invocation -> {
+            release.await();
+            return invocation.callRealMethod();
+        }).when(storageService).openReader(slowPath);
+
+        // Act
+        List<AuditEvent> first = auditService.searchAllAudit(SearchCriteria.builder().build());
+        release.countDown();
+        List<AuditEvent> second = auditService.searchAllAudit(SearchCriteria.builder().build());
+
+        // Assert - bob is missing only until his load completes, and is read once
+        assertThat(first).extracting(AuditEvent::getUsername).containsExactlyInAnyOrder("alice", "carol");
+        assertThat(second).extracting(AuditEvent::getUsername).containsExactlyInAnyOrder("alice", "bob", "carol");
+        verify(storageService, times(1)).openReader(slowPath);
     }
 
     @Test
-    void recordUpload_shouldInvalidateCacheForUser() {
+    void searchAllAudit_shouldHoldLoadPermitUntilTimedOutLoadFinishes() throws Exception {
+        // Arrange - one load at a time, and alice's never finishes until released
+        config.getAudit().setLoadParallelism(1);
+        config.getAudit().setLoadTimeout(Duration.ofSeconds(1));
+        for (String user : List.of("alice", "bob")) {
+            writeBaseFile(user, HEADER
+                    + "uuid-" + user + ",UPLOAD,2024-11-09T14:30:00Z," + user + ",doc.pdf,2024-11-09T14-30-00_doc.pdf,1024,application/pdf,192.168.1.1,Mozilla/5.0,session123," + user + "\n");
+        }
+        String slowPath = auditDir.resolve("alice.csv").toString();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        lenient().doAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return invocation.callRealMethod();
+        }).when(storageService).openReader(slowPath);
+
+        // Act
+        auditService.searchAllAudit(SearchCriteria.builder().build());
+        started.await();
+        List<AuditEvent> whileStuck = auditService.searchAllAudit(SearchCriteria.builder().build());
+        List<AuditEvent> singleUser = auditService.searchAllAudit(SearchCriteria.builder().username("bob").build());
+        release.countDown();
+        List<AuditEvent> afterwards = auditService.searchAllAudit(SearchCriteria.builder().build());
+
+        // Assert - the stuck load keeps its permit, so nothing else loads until it finishes
+        assertThat(whileStuck).isEmpty();
+        assertThat(singleUser).isEmpty();
+        assertThat(afterwards).extracting(AuditEvent::getUsername).containsExactlyInAnyOrder("alice", "bob");
+    }
+
+    @Test
+    void searchAllAudit_shouldEvictUsersBeyondCacheMaxSize() throws IOException {
+        // Arrange - room for one user's log (about 3KB estimated) but not two
+        config.getAudit().setCacheMaxSize(DataSize.ofKilobytes(5));
+        auditService = new AuditService(auditLogStore, writeQueue, new FilenameIndex(auditLogStore, writeQueue, config),
+                partitionStore, config);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        auditService.bindTo(registry);
+        for (String user : List.of("alice", "bob")) {
+            writeBaseFile(user, HEADER
+                    + "uuid-" + user + ",UPLOAD,2024-11-09T14:30:00Z," + user + ",doc.pdf,2024-11-09T14-30-00_doc.pdf,1024,application/pdf,192.168.1.1,Mozilla/5.0,session123," + user + "\n");
+        }
+        SearchCriteria alice = SearchCriteria.builder().username("alice").build();
+        SearchCriteria bob = SearchCriteria.builder().username("bob").build();
+
+        // Act - only one of the two users fits
+        auditService.searchAllAudit(alice);
+        auditService.searchAllAudit(bob);
+        auditService.searchAllAudit(alice);
+        auditService.searchAllAudit(bob);
+
+        // Assert - whichever user the eviction policy kept, the other is reloaded
+        verify(storageService, atLeast(3)).openReader(argThat(path -> path.endsWith("alice.csv") || path.endsWith("bob.csv")));
+        assertThat(registry.get("cache.evictions").tag("cache", "audit.users").functionCounter().count())
+                .isGreaterThanOrEqualTo(1);
+        assertThat(registry.get("cache.gets").tag("cache", "audit.users").tag("result", "miss").functionCounter().count())
+                .isGreaterThanOrEqualTo(3);
+    }
+
+    @Test
+    void recordUpload_shouldUpdateCachedEventsWithoutReload() throws IOException {
         // Arrange
         setupMockRequest(); // Setup request mock for this test
 
@@ -334,43 +1329,138 @@ class AuditServiceTest {
                 event_id,event_type,timestamp,username,filename,stored_as,file_size,content_type,ip_address,user_agent,session_id,actor_username
                 uuid1,UPLOAD,2024-11-09T14:30:00Z,joe.bloggs,old.pdf,2024-11-09T14-30-00_old.pdf,1024000,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs
                 """;
-
-        when(storageService.listFiles("/audit")).thenReturn(List.of("/audit/joe.bloggs.csv"));
-        when(storageService.exists("/audit/joe.bloggs.csv")).thenReturn(true);
-        when(storageService.readString("/audit/joe.bloggs.csv")).thenReturn(csvContent);
+        writeBaseFile(username, csvContent);
 
         // First search to populate cache
         auditService.searchAllAudit(SearchCriteria.builder().build());
+        clearInvocations(storageService);
+
+        // Act - record upload and download, flushing so storage would hold them too
+        auditService.recordUpload(username,
+                uploadMetadata("new.pdf", "2024-11-10T10-00-00_new.pdf"), request);
+        auditService.recordDownload(username, "old.pdf", "2024-11-09T14-30-00_old.pdf", "admin", request);
+        writeQueue.flush();
+        List<AuditEvent> results = auditService.searchAllAudit(SearchCriteria.builder().build());
+
+        // Assert - cached list was appended to, user never reloaded
+        verify(storageService, never()).openReader(anyString());
+        assertThat(results).extracting(AuditEvent::getEventType).containsExactly("DOWNLOAD", "UPLOAD", "UPLOAD");
+        assertThat(results).extracting(AuditEvent::getFilename).containsExactly("old.pdf", "new.pdf", "old.pdf");
+    }
 
-        // Reset mock to verify next call
-        reset(storageService);
-        when(storageService.exists("/audit/joe.bloggs.csv")).thenReturn(true);
+    @Test
+    void searchPage_shouldKeepPerTypeListsCurrentAsEventsAreRecorded() throws IOException {
+        // Arrange
+        setupMockRequest(); // Setup request mock for this test
+        writeBaseFile("joe.bloggs", HEADER
+                + "uuid1,UPLOAD,2024-11-09T14:30:00Z,joe.bloggs,old.pdf,2024-11-09T14-30-00_old.pdf,1024000,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n"
+                + "uuid2,DOWNLOAD,2024-11-09T15:00:00Z,joe.bloggs,old.pdf,2024-11-09T14-30-00_old.pdf,,,192.168.1.1,Mozilla/5.0,session123,admin\n");
+        SearchCriteria uploads = SearchCriteria.builder().eventType("UPLOAD").build();
+        SearchCriteria downloads = SearchCriteria.builder().eventType("DOWNLOAD").build();
+        auditService.searchPage(uploads, 0, 10); // populate cache
 
-        FileMetadata metadata = FileMetadata.builder()
-                .originalFilename("new.pdf")
-                .storedFilename("2024-11-10T10-00-00_new.pdf")
-                .size(2048000L)
-                .contentType("application/pdf")
-                .build();
+        // Act
+        auditService.recordUpload("joe.bloggs", uploadMetadata("new.pdf", "2024-11-10T10-00-00_new.pdf"), request);
+        auditService.recordDownload("joe.bloggs", "new.pdf", "2024-11-10T10-00-00_new.pdf", "admin", request);
 
-        // Act - record upload (should invalidate cache)
-        auditService.recordUpload(username, metadata, request);
+        // Assert
+        assertThat(auditService.searchPage(uploads, 0, 10).getEvents())
+                .extracting(AuditEvent::getFilename).containsExactly("new.pdf", "old.pdf");
+        assertThat(auditService.searchPage(downloads, 0, 10).getEvents())
+                .extracting(AuditEvent::getActorUsername).containsExactly("admin", "admin");
+        assertThat(auditService.searchPage(uploads, 0, 10).getTotalResults()).isEqualTo(2);
+    }
+
+    @Test
+    void searchPage_shouldMatchFilenameSubstringsThroughIndex() throws IOException {
+        // Arrange
+        setupMockRequest(); // Setup request mock for this test
+        writeBaseFile("joe.bloggs", HEADER
+                + "uuid1,UPLOAD,2024-11-09T14:30:00Z,joe.bloggs,Quarterly-Report.pdf,s-q.pdf,1,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n"
+                + "uuid2,UPLOAD,2024-11-09T15:00:00Z,joe.bloggs,report-port.pdf,s-r.pdf,1,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n"
+                + "uuid3,UPLOAD,2024-11-09T16:00:00Z,joe.bloggs,invoice.pdf,s-i.pdf,1,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n"
+                + "uuid4,UPLOAD,2024-11-09T17:00:00Z,joe.bloggs,abcd-bcde.txt,s-a.txt,1,text/plain,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n");
+        auditService.searchPage(SearchCriteria.builder().build(), 0, 10); // populate cache
+
+        // Act - the new upload is indexed as it is recorded
+        auditService.recordUpload("joe.bloggs", uploadMetadata("REPORT-2025.xlsx", "s-2025.xlsx"), request);
+
+        // Assert
+        assertThat(auditService.searchPage(SearchCriteria.builder().filename("report").build(), 0, 10).getEvents())
+                .extracting(AuditEvent::getFilename)
+                .containsExactly("REPORT-2025.xlsx", "report-port.pdf", "Quarterly-Report.pdf");
+        // Every trigram of "abcde" appears in "abcd-bcde" but the substring does not
+        assertThat(auditService.searchPage(SearchCriteria.builder().filename("abcde").build(), 0, 10).getEvents())
+                .isEmpty();
+        // Too short for trigrams - falls back to scanning
+        assertThat(auditService.searchPage(SearchCriteria.builder().filename("IN").build(), 0, 10).getEvents())
+                .extracting(AuditEvent::getFilename).containsExactly("invoice.pdf");
+    }
+
+    @Test
+    void searchPage_shouldMatchFilenamesIndependentlyOfDefaultLocale() throws IOException {
+        // Arrange - Turkish lower-cases "I" to a dotless "ı"
+        writeBaseFile("joe.bloggs", HEADER
+                + "uuid1,UPLOAD,2024-11-09T14:30:00Z,joe.bloggs,INVOICE.pdf,s-i.pdf,1,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n");
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+        try {
+            // Act - "in" is too short for trigrams, "invoice" goes through the index
+            List<AuditEvent> scanned = auditService.searchPage(SearchCriteria.builder().filename("in").build(), 0, 10).getEvents();
+            List<AuditEvent> indexed = auditService.searchPage(SearchCriteria.builder().filename("invoice").build(), 0, 10).getEvents();
+
+            // Assert
+            assertThat(scanned).extracting(AuditEvent::getFilename).containsExactly("INVOICE.pdf");
+            assertThat(indexed).extracting(AuditEvent::getFilename).containsExactly("INVOICE.pdf");
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    @Test
+    void searchPage_shouldMatchFilenamesSpreadThroughLargeLog() throws IOException {
+        // Arrange - matches far apart, so index entries span multi-byte gaps
+        StringBuilder csv = new StringBuilder(HEADER);
+        for (int i = 0; i < 1000; i++) {
+            String filename = i % 300 == 7 ? "contract-" + i + ".pdf" : "invoice-" + i + ".pdf";
+            csv.append("uuid").append(i).append(",UPLOAD,")
+                    .append(Instant.parse("2024-11-09T00:00:00Z").plusSeconds(i))
+                    .append(",joe.bloggs,").append(filename).append(",s-").append(i)
+                    .append(".pdf,1,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\n");
+        }
+        writeBaseFile("joe.bloggs", csv.toString());
+
+        // Act
+        AuditPage page = auditService.searchPage(SearchCriteria.builder().filename("CONTRACT").build(), 0, 10);
+
+        // Assert
+        assertThat(page.getEvents()).extracting(AuditEvent::getFilename)
+                .containsExactly("contract-907.pdf", "contract-607.pdf", "contract-307.pdf", "contract-7.pdf");
+        assertThat(page.getTotalResults()).isEqualTo(4);
+    }
 
-        // Assert - verify cache was used before upload
-        verify(storageService, never()).readString(anyString());
+    @Test
+    void recordUpload_shouldNotLoadUncachedUser() {
+        // Arrange
+        setupMockRequest(); // Setup request mock for this test
+
+        // Act
+        auditService.recordUpload("joe.bloggs",
+                uploadMetadata("new.pdf", "2024-11-10T10-00-00_new.pdf"), request);
+
+        // Assert
+        verify(storageService, never()).openReader(anyString());
+        verify(storageService, never()).listFiles(anyString());
     }
 
     @Test
-    void searchAllAudit_shouldHandleEmptyOptionalFields() {
+    void searchAllAudit_shouldHandleEmptyOptionalFields() throws IOException {
         // Arrange - CSV with some optional fields empty
         String csvContent = """
                 event_id,event_type,timestamp,username,filename,stored_as,file_size,content_type,ip_address,user_agent,session_id,actor_username
                 uuid1,DOWNLOAD,2024-11-09T14:30:00Z,joe.bloggs,document.pdf,2024-11-09T14-30-00_document.pdf,,,192.168.1.1,,session123,admin
                 """;
-
-        when(storageService.listFiles("/audit")).thenReturn(List.of("/audit/joe.bloggs.csv"));
-        when(storageService.exists("/audit/joe.bloggs.csv")).thenReturn(true);
-        when(storageService.readString("/audit/joe.bloggs.csv")).thenReturn(csvContent);
+        writeBaseFile("joe.bloggs", csvContent);
 
         SearchCriteria criteria = SearchCriteria.builder().build();
 
@@ -385,4 +1475,43 @@ class AuditServiceTest {
         assertThat(event.getUserAgent()).isNull();
         assertThat(event.getActorUsername()).isEqualTo("admin");
     }
+
+    @Test
+    void searchAllAudit_shouldDecodeQuotedFieldsAndCrlfLineEndings() throws IOException {
+        // Arrange - filename with a comma, a quote and a line break, as written by commons-csv
+        writeBaseFile("joe.bloggs", HEADER.replace("\n", "\r\n")
+                + "uuid1,UPLOAD,2024-11-09T14:30:00.123Z,joe.bloggs,\"Q3, \"\"final\"\"\nv2.pdf\",2024-11-09T14-30-00_q3.pdf,1024,application/pdf,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\r\n"
+                + "uuid2,DOWNLOAD,2024-11-09T15:30:00Z,joe.bloggs,notes.txt,2024-11-09T15-30-00_notes.txt,,,192.168.1.1,Mozilla/5.0,session123,joe.bloggs\r\n");
+
+        // Act
+        List<AuditEvent> results = auditService.searchAllAudit(SearchCriteria.builder().build());
+
+        // Assert
+        assertThat(results).hasSize(2);
+        AuditEvent upload = results.get(1);
+        assertThat(upload.getFilename()).isEqualTo("Q3, \"final\"\nv2.pdf");
+        assertThat(upload.getTimestamp()).isEqualTo(Instant.parse("2024-11-09T14:30:00.123Z"));
+        assertThat(upload.getFileSize()).isEqualTo(1024L);
+        assertThat(results.get(0).getFileSize()).isNull();
+        // Repeated values are shared rather than allocated per record
+        assertThat(results.get(0).getUserAgent()).isSameAs(upload.getUserAgent());
+    }
+
+    @Test
+    void searchAllAudit_shouldMapColumnsByNameForNonStandardHeader() throws IOException {
+        // Arrange - older file with reordered columns and no session_id
+        writeBaseFile("joe.bloggs", """
+                event_type,event_id,timestamp,username,filename,stored_as,file_size,content_type,ip_address,user_agent,actor_username
+                UPLOAD,uuid1,2024-11-09T14:30:00Z,joe.bloggs,document.pdf,2024-11-09T14-30-00_document.pdf,1024,application/pdf,192.168.1.1,Mozilla/5.0,joe.bloggs
+                """);
+
+        // Act
+        List<AuditEvent> results = auditService.searchAllAudit(SearchCriteria.builder().build());
+
+        // Assert
+        assertThat(results).hasSize(1);
+        assertThat(results.get(0).getEventId()).isEqualTo("uuid1");
+        assertThat(results.get(0).getEventType()).isEqualTo("UPLOAD");
+        assertThat(results.get(0).getSessionId()).isNull();
+    }
 }
@@ -1,17 +1,23 @@
 package com.lbg.markets.luxback.service;
 
 import com.lbg.markets.luxback.exception.StorageException;
+import com.lbg.markets.luxback.model.ObjectStat;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.List;
+import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -158,6 +164,105 @@ class LocalStorageServiceTest {
                 .hasMessageContaining("File not found");
     }
 
+    @Test
+    void open_shouldReturnMetadataAndStreamContent() throws IOException {
+        // Arrange
+        Path path = tempDir.resolve("test.txt");
+        Files.writeString(path, "Hello, World!", StandardCharsets.UTF_8);
+
+        // Act
+        StoredFile file = storageService.open(path.toString()).orElseThrow();
+
+        // Assert
+        assertThat(file.stat().getSize()).isEqualTo(13);
+        try (InputStream in = file.openStream()) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("Hello, World!");
+        }
+    }
+
+    @Test
+    void open_shouldStreamSeveralRangesFromOneHandle() throws IOException {
+        // Arrange
+        Path path = tempDir.resolve("test.txt");
+        Files.writeString(path, "0123456789", StandardCharsets.UTF_8);
+
+        // Act & Assert
+        try (StoredFile file = storageService.open(path.toString()).orElseThrow()) {
+            try (InputStream in = file.openStream(7, 3)) {
+                assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("789");
+            }
+            try (InputStream in = file.openStream(1, 2)) {
+                assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("12");
+            }
+        }
+    }
+
+    @Test
+    void open_shouldTransferRangeAndExposeLocalPath() throws IOException {
+        // Arrange
+        Path path = tempDir.resolve("test.txt");
+        Files.writeString(path, "0123456789", StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        try (StoredFile file = storageService.open(path.toString()).orElseThrow()) {
+            file.transferTo(2, 5, out);
+
+            // Assert
+            assertThat(file.localPath()).contains(path);
+        }
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo("23456");
+    }
+
+    @Test
+    void open_shouldReturnEmptyWhenFileNotFound() {
+        // Act & Assert
+        assertThat(storageService.open(tempDir.resolve("nonexistent.txt").toString())).isEmpty();
+    }
+
+    @Test
+    void readRange_shouldReturnOnlyRequestedBytes() throws IOException {
+        // Arrange
+        Path path = tempDir.resolve("test.txt");
+        Files.writeString(path, "0123456789", StandardCharsets.UTF_8);
+
+        // Act & Assert
+        try (InputStream in = storageService.readRange(path.toString(), 3, 4)) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("3456");
+        }
+        try (InputStream in = storageService.readRange(path.toString(), 8, 10)) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("89");
+        }
+    }
+
+    @Test
+    void openReader_shouldStreamFileContent() throws IOException {
+        // Arrange
+        String path = tempDir.resolve("test.txt").toString();
+        String content = "Test content with unicode: 文档";
+        Files.writeString(Path.of(path), content, StandardCharsets.UTF_8);
+
+        // Act
+        String readContent;
+        try (Reader reader = storageService.openReader(path)) {
+            readContent = new BufferedReader(reader).readLine();
+        }
+
+        // Assert
+        assertThat(readContent).isEqualTo(content);
+    }
+
+    @Test
+    void openReader_shouldThrowWhenFileNotFound() {
+        // Arrange
+        String path = tempDir.resolve("nonexistent.txt").toString();
+
+        // Act & Assert
+        assertThatThrownBy(() -> storageService.openReader(path))
+                .isInstanceOf(StorageException.class)
+                .hasMessageContaining("File not found");
+    }
+
     @Test
     void append_shouldAppendToExistingFile() throws IOException {
         // Arrange
@@ -198,6 +303,115 @@ class LocalStorageServiceTest {
         assertThat(Files.exists(Path.of(path))).isTrue();
     }
 
+    @Test
+    void compose_shouldConcatenateSourcesOntoTarget() throws IOException {
+        // Arrange
+        Path target = tempDir.resolve("base.csv");
+        Path segment1 = tempDir.resolve("segments/1.csv");
+        Path segment2 = tempDir.resolve("segments/2.csv");
+        Files.createDirectories(segment1.getParent());
+        Files.writeString(target, "header\n", StandardCharsets.UTF_8);
+        Files.writeString(segment1, "record1\n", StandardCharsets.UTF_8);
+        Files.writeString(segment2, "record2\n", StandardCharsets.UTF_8);
+
+        // Act
+        storageService.compose(List.of(target.toString(), segment1.toString(), segment2.toString()),
+                target.toString());
+
+        // Assert
+        String content = Files.readString(target, StandardCharsets.UTF_8);
+        assertThat(content).isEqualTo("header\nrecord1\nrecord2\n");
+        assertThat(Files.exists(segment1)).isTrue(); // Sources are left in place
+    }
+
+    @Test
+    void compose_shouldThrowWhenSourceMissingAndLeaveTargetUntouched() throws IOException {
+        // Arrange
+        Path target = tempDir.resolve("base.csv");
+        Files.writeString(target, "header\n", StandardCharsets.UTF_8);
+        String missing = tempDir.resolve("missing.csv").toString();
+
+        // Act & Assert
+        assertThatThrownBy(() -> storageService.compose(List.of(target.toString(), missing), target.toString()))
+                .isInstanceOf(StorageException.class)
+                .hasMessageContaining("File not found");
+        assertThat(Files.readString(target, StandardCharsets.UTF_8)).isEqualTo("header\n");
+    }
+
+    @Test
+    void composeIfUnchanged_shouldComposeOnlyAtExpectedGeneration() throws IOException {
+        // Arrange
+        Path target = tempDir.resolve("base.csv");
+        Path segment = tempDir.resolve("1.csv");
+        Files.writeString(target, "header\n", StandardCharsets.UTF_8);
+        Files.writeString(segment, "record1\n", StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(target, FileTime.fromMillis(1_000_000));
+        long generation = storageService.stat(target.toString()).orElseThrow().getGeneration();
+        List<String> sources = List.of(target.toString(), segment.toString());
+
+        // Act
+        Optional<ObjectStat> stale = storageService.composeIfUnchanged(sources, target.toString(), generation + 1);
+        Optional<ObjectStat> composed = storageService.composeIfUnchanged(sources, target.toString(), generation);
+
+        // Assert
+        assertThat(stale).isEmpty();
+        assertThat(composed).isPresent();
+        assertThat(composed.get().getGeneration()).isNotEqualTo(generation);
+        assertThat(Files.readString(target, StandardCharsets.UTF_8)).isEqualTo("header\nrecord1\n");
+    }
+
+    @Test
+    void writeStringIfAbsent_shouldNotReplaceExistingFile() throws IOException {
+        // Arrange
+        String path = tempDir.resolve("dir/test.txt").toString();
+
+        // Act
+        Optional<ObjectStat> created = storageService.writeStringIfAbsent(path, "first");
+        Optional<ObjectStat> second = storageService.writeStringIfAbsent(path, "second");
+
+        // Assert
+        assertThat(created).isPresent();
+        assertThat(second).isEmpty();
+        assertThat(Files.readString(Path.of(path), StandardCharsets.UTF_8)).isEqualTo("first");
+    }
+
+    @Test
+    void delete_shouldRemoveFileAndReportWhetherItExisted() throws IOException {
+        // Arrange
+        Path path = tempDir.resolve("test.txt");
+        Files.writeString(path, "content", StandardCharsets.UTF_8);
+
+        // Act & Assert
+        assertThat(storageService.delete(path.toString())).isTrue();
+        assertThat(Files.exists(path)).isFalse();
+        assertThat(storageService.delete(path.toString())).isFalse();
+    }
+
+    @Test
+    void stat_shouldReturnSizeAndChangeGenerationWhenFileIsReplaced() throws IOException {
+        // Arrange
+        Path path = tempDir.resolve("test.txt");
+        Files.writeString(path, "content", StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(path, FileTime.fromMillis(1_000_000));
+
+        // Act
+        ObjectStat before = storageService.stat(path.toString()).orElseThrow();
+        Files.writeString(path, "new content", StandardCharsets.UTF_8);
+        ObjectStat after = storageService.stat(path.toString()).orElseThrow();
+
+        // Assert
+        assertThat(before.getSize()).isEqualTo(7);
+        assertThat(after.getSize()).isEqualTo(11);
+        assertThat(after.getGeneration()).isNotEqualTo(before.getGeneration());
+        assertThat(after.getUpdated()).isAfter(before.getUpdated());
+    }
+
+    @Test
+    void stat_shouldReturnEmptyForNonexistentFile() {
+        // Act & Assert
+        assertThat(storageService.stat(tempDir.resolve("nonexistent.txt").toString())).isEmpty();
+    }
+
     @Test
     void exists_shouldReturnTrueForExistingFile() throws IOException {
         // Arrange
@@ -299,6 +513,31 @@ class LocalStorageServiceTest {
         assertThat(files.get(0)).endsWith("file.txt");
     }
 
+    @Test
+    void listDirectory_shouldReturnOnlyTopLevelEntries() throws IOException {
+        // Arrange
+        Files.writeString(tempDir.resolve("file.txt"), "content", StandardCharsets.UTF_8);
+        Path subdir = tempDir.resolve("subdir");
+        Files.createDirectory(subdir);
+        Files.writeString(subdir.resolve("nested.txt"), "content", StandardCharsets.UTF_8);
+
+        // Act
+        List<String> entries = storageService.listDirectory(tempDir.toString());
+
+        // Assert - subdirectories once, with a trailing slash, and nothing beneath them
+        assertThat(entries).containsExactlyInAnyOrder(
+                tempDir.resolve("file.txt").toString(), subdir + "/");
+    }
+
+    @Test
+    void listDirectory_shouldReturnEmptyListForNonexistentDirectory() {
+        // Act
+        List<String> entries = storageService.listDirectory(tempDir.resolve("nonexistent").toString());
+
+        // Assert
+        assertThat(entries).isEmpty();
+    }
+
     @Test
     void writeFile_shouldHandleLargeFile() throws IOException {
         // Arrange